@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.digest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of <em>Content-Digest</em> calculation and verification for various content sizes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DigestBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    private int contentSize;
+
+    @Param({"SHA_256", "SHA_512"})
+    private DigestAlgorithm algorithm;
+
+    private byte[] content;
+    private String digestHeader;
+
+    @Setup
+    public void setup() {
+        content = new byte[contentSize];
+        new Random(contentSize).nextBytes(content);
+        digestHeader = DigestCalculator.calculateDigestHeader(content, algorithm);
+    }
+
+    @Benchmark
+    public String calculate() {
+        return DigestCalculator.calculateDigestHeader(content, algorithm);
+    }
+
+    @Benchmark
+    public String calculateAllAlgorithms() {
+        return DigestCalculator.calculateDigestHeader(content, List.of(DigestAlgorithm.values()));
+    }
+
+    @Benchmark
+    public void verify() throws DigestException {
+        DigestVerifier.verifyDigestHeader(digestHeader, content);
+    }
+}
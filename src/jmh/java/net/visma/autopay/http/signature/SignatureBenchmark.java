@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of signature creation and verification, for each {@link SignatureAlgorithm}
+ * <p>
+ * Signed request resembles a typical API call: derived components, a few headers and <em>Content-Digest</em>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureBenchmark {
+    private static final String LABEL = "sig1";
+    private static final String KEY_ID = "benchmark-key";
+
+    @Param({"RSA_PSS_SHA_512", "RSA_SHA_256", "HMAC_SHA_256", "ECDSA_P256_SHA_256", "ECDSA_P384_SHA_384", "ED_25519"})
+    private SignatureAlgorithm algorithm;
+
+    private SignatureSpec signatureSpec;
+    private SignatureTemplate signatureTemplate;
+    private SignatureContext signatureContext;
+    private VerificationSpec verificationSpec;
+
+    @Setup
+    public void setup() throws Exception {
+        var signatureSpecBuilder = SignatureSpec.builder()
+                .signatureLabel(LABEL)
+                .parameters(SignatureParameters.builder()
+                        .createdNow()
+                        .keyId(KEY_ID)
+                        .visibleAlgorithm(algorithm)
+                        .build())
+                .components(getComponents())
+                .context(getRequestContext().build());
+        var signatureTemplateBuilder = SignatureTemplate.builder()
+                .signatureLabel(LABEL)
+                .createdNow()
+                .parameters(SignatureParameters.builder()
+                        .keyId(KEY_ID)
+                        .visibleAlgorithm(algorithm)
+                        .build())
+                .components(getComponents());
+        var publicKeyInfoBuilder = PublicKeyInfo.builder().algorithm(algorithm);
+
+        if (algorithm == SignatureAlgorithm.HMAC_SHA_256) {
+            var secret = new byte[64];
+            new SecureRandom().nextBytes(secret);
+            signatureSpecBuilder.privateKey(secret);
+            signatureTemplateBuilder.privateKey(secret);
+            publicKeyInfoBuilder.publicKey(secret);
+        } else {
+            var keyPair = generateKeyPair();
+            signatureSpecBuilder.privateKey(keyPair.getPrivate());
+            signatureTemplateBuilder.privateKey(keyPair.getPrivate());
+            publicKeyInfoBuilder.publicKey(keyPair.getPublic());
+        }
+
+        signatureSpec = signatureSpecBuilder.build();
+        signatureTemplate = signatureTemplateBuilder.build();
+        signatureContext = getRequestContext().build();
+        var publicKeyInfo = publicKeyInfoBuilder.build();
+        var signatureResult = signatureSpec.sign();
+
+        verificationSpec = VerificationSpec.builder()
+                .signatureLabel(LABEL)
+                .requiredComponents(getComponents())
+                .requiredParameters(SignatureParameterType.CREATED, SignatureParameterType.KEY_ID)
+                .maximumAge(3600)
+                .publicKeyGetter(keyId -> publicKeyInfo)
+                .context(getRequestContext()
+                        .header(SignatureHeaders.SIGNATURE_INPUT, signatureResult.getSignatureInput())
+                        .header(SignatureHeaders.SIGNATURE, signatureResult.getSignature())
+                        .build())
+                .build();
+    }
+
+    @Benchmark
+    public SignatureResult sign() throws SignatureException {
+        return signatureSpec.sign();
+    }
+
+    @Benchmark
+    public SignatureResult signWithTemplate() throws SignatureException {
+        return signatureTemplate.sign(signatureContext);
+    }
+
+    @Benchmark
+    public void verify() throws SignatureException {
+        verificationSpec.verify();
+    }
+
+    private KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator;
+
+        switch (algorithm) {
+            case RSA_PSS_SHA_512:
+            case RSA_SHA_256:
+                generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048);
+                break;
+            case ECDSA_P256_SHA_256:
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+                break;
+            case ECDSA_P384_SHA_384:
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp384r1"));
+                break;
+            case ED_25519:
+                generator = KeyPairGenerator.getInstance("Ed25519");
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm " + algorithm);
+        }
+
+        return generator.generateKeyPair();
+    }
+
+    private static SignatureComponents getComponents() {
+        return SignatureComponents.builder()
+                .method()
+                .authority()
+                .path()
+                .query()
+                .headers("Content-Type", "Content-Length", "Content-Digest")
+                .build();
+    }
+
+    private static SignatureContext.Builder getRequestContext() {
+        return SignatureContext.builder()
+                .method("POST")
+                .targetUri("https://api.example.com/v1/payments/8f8f0e3c?expand=details&locale=nb-NO")
+                .header("Content-Type", "application/json")
+                .header("Content-Length", 1024)
+                .header("Content-Digest", "sha-256=:X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:")
+                .header("Accept", "application/json")
+                .header("User-Agent", "benchmark/1.0");
+    }
+}
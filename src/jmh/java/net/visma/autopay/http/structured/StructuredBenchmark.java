@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.structured;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of parsing and serialization of Structured Fields typically found in signed requests
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StructuredBenchmark {
+    private static final String SIGNATURE_INPUT = "sig1=(\"@method\" \"@authority\" \"@path\" \"@query\" \"content-type\" \"content-length\" "
+            + "\"content-digest\");created=1618884473;keyid=\"test-key-rsa-pss\";alg=\"rsa-pss-sha512\"";
+    private static final String SIGNATURE = "sig1=:pU3KGCUwux1tEyze1iN7LtkeP3IfyxlxF0SU1kk8nVw0YL4xIB5p/tqg7ui5mX9cfCmZ/a/lkyU81lSvTfrXFCegrrP+6SMvivIhH57kkcWxC+y1Vjv8Hm+TQn7LyP4p"
+            + "VeXNjkbcjtS3wnZNKlpNdncG+F2GkAJK1r2jQBvpyMvMyTX2zR9hImrhUziuGjQATTO6DSRqwEyBsbryPjv57vX3nytJNK+H9VILablLDZguhbtVtnKocmN6zXRm/LYO"
+            + "Do/xhGOw5LK6KXA0dPBkrGj3APWwKz3GZvRb3qosyu3NK1FXQQ5N7krys09DCgc0R95jbA6AbJV7poTWQx+16g==:";
+    private static final String CONTENT_DIGEST = "sha-256=:X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:, "
+            + "sha-512=:WZDPaVn/7XgHaAy8pmojAkGWoRx2UFChF41A2svX+TaPm+AbwAgBWnrIiYllu7BNNyealdVLvRwEmTHWXvJwew==:";
+    private static final byte[] SIGNATURE_INPUT_BYTES = SIGNATURE_INPUT.getBytes(StandardCharsets.US_ASCII);
+    private static final List<String> SIGNATURE_INPUT_LINES = List.of(SIGNATURE_INPUT, "sig2=(\"@method\");created=1618884473");
+    private static final String ACCEPT = "text/html, application/xhtml+xml, application/xml;q=0.9, */*;q=0.8";
+
+    private StructuredDictionary signatureInputDictionary;
+    private StructuredDictionary signatureDictionary;
+    private StructuredDictionary contentDigestDictionary;
+
+    @Setup
+    public void setup() throws StructuredException {
+        signatureInputDictionary = StructuredDictionary.parse(SIGNATURE_INPUT);
+        signatureDictionary = StructuredDictionary.parse(SIGNATURE);
+        contentDigestDictionary = StructuredDictionary.parse(CONTENT_DIGEST);
+    }
+
+    @Benchmark
+    public StructuredDictionary parseSignatureInput() throws StructuredException {
+        return StructuredDictionary.parse(SIGNATURE_INPUT);
+    }
+
+    @Benchmark
+    public StructuredDictionary parseSignatureInputBytes() throws StructuredException {
+        return StructuredDictionary.parse(SIGNATURE_INPUT_BYTES);
+    }
+
+    @Benchmark
+    public StructuredDictionary parseSignatureInputLines() throws StructuredException {
+        return StructuredDictionary.parse(SIGNATURE_INPUT_LINES);
+    }
+
+    @Benchmark
+    public StructuredDictionary parseSignature() throws StructuredException {
+        return StructuredDictionary.parse(SIGNATURE);
+    }
+
+    @Benchmark
+    public StructuredDictionary parseContentDigest() throws StructuredException {
+        return StructuredDictionary.parse(CONTENT_DIGEST);
+    }
+
+    @Benchmark
+    public StructuredList parseList() throws StructuredException {
+        return StructuredList.parse(ACCEPT);
+    }
+
+    @Benchmark
+    public StructuredField parseAny() throws StructuredException {
+        return StructuredField.parse(SIGNATURE_INPUT);
+    }
+
+    @Benchmark
+    public String serializeSignatureInput() {
+        return signatureInputDictionary.serialize();
+    }
+
+    @Benchmark
+    public String serializeSignature() {
+        return signatureDictionary.serialize();
+    }
+
+    @Benchmark
+    public String serializeContentDigest() {
+        return contentDigestDictionary.serialize();
+    }
+}
@@ -26,6 +26,8 @@ import java.util.Optional;
 
 /**
  * Hash algorithms. Algorithms with status <em>Deprecated</em> are not handled.
+ * <p>
+ * Algorithms are declared from the cheapest and weakest to the most expensive and strongest one.
  *
  * @see <a href="https://www.rfc-editor.org/rfc/rfc9530.html#name-creation-of-the-hash-algori">
  *      Hash Algorithms for HTTP Digest Fields Registry</a>
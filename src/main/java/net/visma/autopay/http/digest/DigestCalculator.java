@@ -21,12 +21,18 @@
  */
 package net.visma.autopay.http.digest;
 
+import net.visma.autopay.http.structured.ParserLimits;
 import net.visma.autopay.http.structured.StructuredDictionary;
 import net.visma.autopay.http.structured.StructuredException;
 import net.visma.autopay.http.structured.StructuredInteger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
 
@@ -40,8 +46,7 @@ public final class DigestCalculator {
     /**
      * Calculates value of a digest, which can be directly copied to HTTP header.
      * <p>
-     * To include multiple digests (with different algorithms) call this method multiple times
-     * and concatenate the results using ", " as a separator.
+     * To include multiple digests (with different algorithms) use {@link #calculateDigestHeader(byte[], Collection)}, which reads the content once.
      *
      * @param content   Binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
      *                  and <em>Content-Encoding</em>.
@@ -53,6 +58,61 @@ public final class DigestCalculator {
         return StructuredDictionary.of(algorithm.getHttpKey(), calculateDigest(content, algorithm)).serialize();
     }
 
+    /**
+     * Calculates value of a digest header containing digests for all given algorithms. The content is read once, by all algorithms.
+     *
+     * @param content    Binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                   and <em>Content-Encoding</em>.
+     * @param algorithms Hash algorithms, in order of produced header entries. Duplicates are ignored.
+     * @return Digest field to be directly copied to the header
+     * @throws IllegalArgumentException Empty algorithm collection
+     * @see StreamingDigester
+     */
+    public static String calculateDigestHeader(byte[] content, Collection<DigestAlgorithm> algorithms) {
+        return StreamingDigester.of(algorithms).update(content).finish();
+    }
+
+    /**
+     * Calculates value of a digest for content read from given stream, until the end of the stream. The stream is not closed.
+     *
+     * @param content   Stream of binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                  and <em>Content-Encoding</em>.
+     * @param algorithm Hash algorithm
+     * @return Digest field to be directly copied to the header
+     * @throws IOException Thrown by the stream
+     * @see StreamingDigester
+     */
+    public static String calculateDigestHeader(InputStream content, DigestAlgorithm algorithm) throws IOException {
+        return StreamingDigester.of(algorithm).update(content).finish();
+    }
+
+    /**
+     * Calculates value of a digest for remaining bytes of given buffer. Heap and direct buffers are supported. Buffer's position is moved to its limit.
+     *
+     * @param content   Buffer with binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                  and <em>Content-Encoding</em>.
+     * @param algorithm Hash algorithm
+     * @return Digest field to be directly copied to the header
+     * @see StreamingDigester
+     */
+    public static String calculateDigestHeader(ByteBuffer content, DigestAlgorithm algorithm) {
+        return StreamingDigester.of(algorithm).update(content).finish();
+    }
+
+    /**
+     * Calculates value of a digest for content read from given blocking channel, until the end of the stream. The channel is not closed.
+     *
+     * @param content   Channel of binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                  and <em>Content-Encoding</em>.
+     * @param algorithm Hash algorithm
+     * @return Digest field to be directly copied to the header
+     * @throws IOException Thrown by the channel
+     * @see StreamingDigester
+     */
+    public static String calculateDigestHeader(ReadableByteChannel content, DigestAlgorithm algorithm) throws IOException {
+        return StreamingDigester.of(algorithm).update(content).finish();
+    }
+
     /**
      * Calculates value of a digest, based on wanted digest taken from <em>Want-Content-Digest</em> or <em>Want-Repr-Digest</em> header.
      * <p>
@@ -101,11 +161,11 @@ public final class DigestCalculator {
      *
      * @param digestHeader HTTP header to parse
      * @return StructuredDictionary representation of the header
-     * @throws DigestException Thrown if given header does not represent a valid Structured Dictionary
+     * @throws DigestException Thrown if given header does not represent a valid Structured Dictionary or exceeds {@link ParserLimits#DEFAULT}
      */
     static StructuredDictionary parseHeader(String digestHeader) throws DigestException {
         try {
-            var digestDict = StructuredDictionary.parse(digestHeader);
+            var digestDict = StructuredDictionary.parse(digestHeader, ParserLimits.DEFAULT);
 
             if (digestDict.isEmpty()) {
                 throw new DigestException(DigestException.ErrorCode.INVALID_HEADER, "Empty digest header");
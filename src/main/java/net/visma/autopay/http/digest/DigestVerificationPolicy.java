@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.digest;
+
+/**
+ * Defines which digests are verified when a digest header contains multiple digests.
+ * <p>
+ * Only digests with supported algorithms, defined in {@link DigestAlgorithm}, are considered. Each algorithm is computed at most once.
+ *
+ * @see DigestVerifier#verifyDigestHeader(String, byte[], DigestVerificationPolicy)
+ */
+public enum DigestVerificationPolicy {
+    /**
+     * Verification succeeds if any of the supported digests is correct. Digests are checked starting with the cheapest algorithm, so for correct
+     * headers only one digest is computed. Default policy.
+     */
+    ANY,
+
+    /**
+     * Only the digest with the strongest supported algorithm is verified
+     */
+    STRONGEST,
+
+    /**
+     * Only the first digest with supported algorithm, in order of the header, is verified
+     */
+    FIRST_SUPPORTED,
+
+    /**
+     * All digests with supported algorithms must be correct
+     */
+    ALL
+}
@@ -22,8 +22,20 @@
 package net.visma.autopay.http.digest;
 
 import net.visma.autopay.http.structured.StructuredBytes;
+import net.visma.autopay.http.structured.StructuredDictionary;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 
 /**
@@ -45,32 +57,267 @@ public final class DigestVerifier {
      *                         (does not match the computed one).
      */
     public static void verifyDigestHeader(String digestHeader, byte[] content) throws DigestException {
-        var validDigestFound = false;
-        var knownAlgorithmFound = false;
+        verifyDigestHeader(digestHeader, content, DigestVerificationPolicy.ANY);
+    }
+
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header according to given policy. Throws exception on failure.
+     * <p>
+     * If the header contains multiple digests, the policy defines which digests with supported algorithms (defined in {@link DigestAlgorithm})
+     * are verified. Each algorithm is computed at most once.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @param policy       Verification policy
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     */
+    public static void verifyDigestHeader(String digestHeader, byte[] content, DigestVerificationPolicy policy) throws DigestException {
+        verifyDigests(DigestCalculator.parseHeader(digestHeader), EnumSet.allOf(DigestAlgorithm.class),
+                algorithm -> DigestCalculator.calculateDigest(content, algorithm), policy);
+    }
+
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header against content read from given stream, until the end
+     * of the stream. The stream is not closed.
+     * <p>
+     * The content is read once. Digests for all supported algorithms included in the header are calculated while reading.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Stream of binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     * @throws IOException     Thrown by the stream
+     * @see #verifyDigestHeader(String, byte[])
+     */
+    public static void verifyDigestHeader(String digestHeader, InputStream content) throws DigestException, IOException {
+        verifyDigestHeader(digestHeader, content, DigestVerificationPolicy.ANY);
+    }
+
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header according to given policy against content read from given
+     * stream, until the end of the stream. The stream is not closed.
+     * <p>
+     * The content is read once. Digests for supported algorithms included in the header and needed by the policy are calculated while reading.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Stream of binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @param policy       Verification policy
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     * @throws IOException     Thrown by the stream
+     * @see #verifyDigestHeader(String, byte[], DigestVerificationPolicy)
+     */
+    public static void verifyDigestHeader(String digestHeader, InputStream content, DigestVerificationPolicy policy)
+            throws DigestException, IOException {
         var digestDict = DigestCalculator.parseHeader(digestHeader);
+        var digester = createDigester(digestDict, policy).update(content);
+        verifyDigests(digester, digestDict);
+    }
 
-        try {
-            for (var entry : digestDict.entrySet(StructuredBytes.class)) {
-                var algorithm = DigestAlgorithm.fromHttpKey(entry.getKey());
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header against remaining bytes of given buffer. Heap and direct
+     * buffers are supported. Buffer's position is moved to its limit.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Buffer with binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     * @see #verifyDigestHeader(String, byte[])
+     */
+    public static void verifyDigestHeader(String digestHeader, ByteBuffer content) throws DigestException {
+        verifyDigestHeader(digestHeader, content, DigestVerificationPolicy.ANY);
+    }
+
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header according to given policy against remaining bytes of given
+     * buffer. Heap and direct buffers are supported. Buffer's position is moved to its limit.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Buffer with binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @param policy       Verification policy
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     * @see #verifyDigestHeader(String, byte[], DigestVerificationPolicy)
+     */
+    public static void verifyDigestHeader(String digestHeader, ByteBuffer content, DigestVerificationPolicy policy) throws DigestException {
+        var digestDict = DigestCalculator.parseHeader(digestHeader);
+        var digester = createDigester(digestDict, policy).update(content);
+        verifyDigests(digester, digestDict);
+    }
 
-                if (algorithm.isPresent()) {
-                    knownAlgorithmFound = true;
-                    var actualDigest = DigestCalculator.calculateDigest(content, algorithm.get());
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header against content read from given blocking channel, until
+     * the end of the stream. The channel is not closed.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Channel of binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     * @throws IOException     Thrown by the channel
+     * @see #verifyDigestHeader(String, byte[])
+     */
+    public static void verifyDigestHeader(String digestHeader, ReadableByteChannel content) throws DigestException, IOException {
+        verifyDigestHeader(digestHeader, content, DigestVerificationPolicy.ANY);
+    }
 
-                    if (Arrays.equals(entry.getValue().bytesValue(), actualDigest)) {
-                        validDigestFound = true;
-                        break;
-                    }
-                }
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header according to given policy against content read from given
+     * blocking channel, until the end of the stream. The channel is not closed.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param content      Channel of binary request or response content. Caller is responsible to use proper encoding, matching <em>Content-Type</em>
+     *                     and <em>Content-Encoding</em>.
+     * @param policy       Verification policy
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     * @throws IOException     Thrown by the channel
+     * @see #verifyDigestHeader(String, byte[], DigestVerificationPolicy)
+     */
+    public static void verifyDigestHeader(String digestHeader, ReadableByteChannel content, DigestVerificationPolicy policy)
+            throws DigestException, IOException {
+        var digestDict = DigestCalculator.parseHeader(digestHeader);
+        var digester = createDigester(digestDict, policy).update(content);
+        verifyDigests(digester, digestDict);
+    }
+
+    /**
+     * Creates a digester for verifying provided digest header, to be used when the content is available in chunks.
+     * <p>
+     * The digester calculates digests for all supported algorithms included in the header. Content should be provided to the digester by its
+     * {@code update()} methods and then verified by {@link #verifyDigestHeader(String, StreamingDigester)}.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @return Digester for supported algorithms included in the header
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included
+     */
+    public static StreamingDigester createDigester(String digestHeader) throws DigestException {
+        return createDigester(digestHeader, DigestVerificationPolicy.ANY);
+    }
+
+    /**
+     * Creates a digester for verifying provided digest header according to given policy, to be used when the content is available in chunks.
+     * <p>
+     * The digester calculates digests only for supported algorithms included in the header which are needed by the policy. Content should be provided
+     * to the digester by its {@code update()} methods and then verified by {@link #verifyDigestHeader(String, StreamingDigester)}.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param policy       Verification policy
+     * @return Digester for supported algorithms included in the header and needed by the policy
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included
+     */
+    public static StreamingDigester createDigester(String digestHeader, DigestVerificationPolicy policy) throws DigestException {
+        return createDigester(DigestCalculator.parseHeader(digestHeader), policy);
+    }
+
+    /**
+     * Verifies provided value of <em>Content-Digest</em> or <em>Repr-Digest</em> header against digests calculated by given digester.
+     * The digester is finished and reset.
+     * <p>
+     * Only digests for algorithms used by the digester are verified. Verification policy given when creating the digester is applied.
+     *
+     * @param digestHeader Header read from HTTP request or response
+     * @param digester     Digester which has been provided with the whole content, usually created by {@link #createDigester(String)}
+     * @throws DigestException Thrown when provided header is syntactically invalid, or any of supported algorithms is included, or digest is incorrect
+     *                         (does not match the computed one).
+     */
+    public static void verifyDigestHeader(String digestHeader, StreamingDigester digester) throws DigestException {
+        verifyDigests(digester, DigestCalculator.parseHeader(digestHeader));
+    }
+
+    private static StreamingDigester createDigester(StructuredDictionary digestDict, DigestVerificationPolicy policy) throws DigestException {
+        var algorithms = getSupportedAlgorithms(digestDict, EnumSet.allOf(DigestAlgorithm.class));
+
+        if (algorithms.isEmpty()) {
+            throw new DigestException(DigestException.ErrorCode.UNSUPPORTED_ALGORITHM, "Unsupported algorithms: " + digestDict.keySet());
+        }
+
+        return new StreamingDigester(selectAlgorithms(algorithms, policy), policy);
+    }
+
+    private static void verifyDigests(StreamingDigester digester, StructuredDictionary digestDict) throws DigestException {
+        var digests = digester.finishDigests();
+        verifyDigests(digestDict, digests.keySet(), digests::get, digester.getVerificationPolicy());
+    }
+
+    private static void verifyDigests(StructuredDictionary digestDict, Set<DigestAlgorithm> availableAlgorithms,
+                                      Function<DigestAlgorithm, byte[]> digestSource, DigestVerificationPolicy policy) throws DigestException {
+        var expectedDigests = new HashMap<DigestAlgorithm, byte[]>();
+
+        try {
+            for (var entry : digestDict.entrySet(StructuredBytes.class)) {
+                var bytes = entry.getValue().bytesValue();
+                DigestAlgorithm.fromHttpKey(entry.getKey()).ifPresent(algorithm -> expectedDigests.put(algorithm, bytes));
             }
         } catch (Exception e) {
             throw new DigestException(DigestException.ErrorCode.INVALID_HEADER, "Invalid digest header", e);
         }
 
-        if (!knownAlgorithmFound) {
+        var algorithms = selectAlgorithms(getSupportedAlgorithms(digestDict, availableAlgorithms), policy);
+
+        if (algorithms.isEmpty()) {
             throw new DigestException(DigestException.ErrorCode.UNSUPPORTED_ALGORITHM, "Unsupported algorithms: " + digestDict.keySet());
-        } else if (!validDigestFound) {
-            throw new DigestException(DigestException.ErrorCode.INCORRECT_DIGEST, "Provided digest different from computed one");
+        }
+
+        if (policy == DigestVerificationPolicy.ALL) {
+            for (var algorithm : algorithms) {
+                if (!MessageDigest.isEqual(expectedDigests.get(algorithm), digestSource.apply(algorithm))) {
+                    throw getIncorrectDigestException();
+                }
+            }
+        } else {
+            for (var algorithm : algorithms) {
+                if (MessageDigest.isEqual(expectedDigests.get(algorithm), digestSource.apply(algorithm))) {
+                    return;
+                }
+            }
+
+            throw getIncorrectDigestException();
+        }
+    }
+
+    private static DigestException getIncorrectDigestException() {
+        return new DigestException(DigestException.ErrorCode.INCORRECT_DIGEST, "Provided digest different from computed one");
+    }
+
+    /**
+     * Returns supported algorithms of given header, in order of the header
+     */
+    private static List<DigestAlgorithm> getSupportedAlgorithms(StructuredDictionary digestDict, Set<DigestAlgorithm> availableAlgorithms) {
+        var algorithms = new ArrayList<DigestAlgorithm>();
+
+        for (var key : digestDict.keySet()) {
+            DigestAlgorithm.fromHttpKey(key).filter(availableAlgorithms::contains).ifPresent(algorithms::add);
+        }
+
+        return algorithms;
+    }
+
+    /**
+     * Selects algorithms to verify, in order of verification
+     */
+    private static List<DigestAlgorithm> selectAlgorithms(List<DigestAlgorithm> algorithms, DigestVerificationPolicy policy) {
+        if (algorithms.isEmpty()) {
+            return algorithms;
+        }
+
+        switch (policy) {
+            case STRONGEST:
+                return List.of(Collections.max(algorithms));
+            case FIRST_SUPPORTED:
+                return List.of(algorithms.get(0));
+            case ANY:
+                var cheapestFirst = new ArrayList<>(algorithms);
+                Collections.sort(cheapestFirst);
+                return cheapestFirst;
+            default:
+                return algorithms;
         }
     }
 
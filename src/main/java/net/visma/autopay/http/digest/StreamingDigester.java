@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.digest;
+
+import net.visma.autopay.http.structured.StructuredDictionary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+
+/**
+ * Incremental digest calculator, for content which is not available as a single byte array.
+ * <p>
+ * Content is provided in chunks by {@code update()} methods, e.g. while it's being received or forwarded, and the digest header is produced by
+ * {@link #finish()}. After finishing, the digester is reset and can be reused for another content.
+ * <p>
+ * Multiple algorithms can be used at once. Then each chunk is passed to all of them, so the content is read only once, and the produced header
+ * contains digests for all the algorithms. Optionally, large chunks can be digested by all algorithms in parallel, see {@link #parallel(Executor)}.
+ * <p>
+ * Objects of this class are not thread-safe.
+ *
+ * @see DigestCalculator
+ * @see DigestVerifier#createDigester(String)
+ */
+public final class StreamingDigester {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CACHE_BLOCK_SIZE = 16384;
+
+    /**
+     * Minimum size of a chunk digested in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 65536;
+
+    private final List<DigestAlgorithm> algorithms;
+    private final List<MessageDigest> messageDigests;
+    private final DigestVerificationPolicy verificationPolicy;
+    private Executor executor;
+
+    StreamingDigester(Collection<DigestAlgorithm> algorithms) {
+        this(algorithms, DigestVerificationPolicy.ANY);
+    }
+
+    StreamingDigester(Collection<DigestAlgorithm> algorithms, DigestVerificationPolicy verificationPolicy) {
+        this.verificationPolicy = Objects.requireNonNull(verificationPolicy);
+        this.algorithms = List.copyOf(new LinkedHashSet<>(algorithms));
+        this.messageDigests = new ArrayList<>(this.algorithms.size());
+
+        if (this.algorithms.isEmpty()) {
+            throw new IllegalArgumentException("No digest algorithms provided");
+        }
+
+        for (var algorithm : this.algorithms) {
+            messageDigests.add(createMessageDigest(algorithm));
+        }
+    }
+
+    /**
+     * Creates digester for given algorithm
+     *
+     * @param algorithm Hash algorithm
+     * @return New digester
+     */
+    public static StreamingDigester of(DigestAlgorithm algorithm) {
+        return new StreamingDigester(List.of(Objects.requireNonNull(algorithm)));
+    }
+
+    /**
+     * Creates digester for given algorithms. Duplicates are ignored.
+     *
+     * @param algorithms Hash algorithms, in order of produced digest header entries
+     * @return New digester
+     * @throws IllegalArgumentException Empty algorithm collection
+     */
+    public static StreamingDigester of(Collection<DigestAlgorithm> algorithms) {
+        return new StreamingDigester(algorithms);
+    }
+
+    /**
+     * Enables parallel digesting of large chunks, when multiple algorithms are used.
+     * <p>
+     * Chunks of at least 64 KiB are digested by each algorithm in a separate task submitted to given executor. Update methods wait for
+     * all tasks to complete. Chunks should be large, e.g. by reading the content into large buffers, for the parallelism to pay off.
+     *
+     * @param executor Executor running digest tasks, or null to disable parallel digesting
+     * @return This digester
+     */
+    public StreamingDigester parallel(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Updates the digest with given bytes
+     *
+     * @param content Content chunk
+     * @return This digester
+     */
+    public StreamingDigester update(byte[] content) {
+        return update(content, 0, content.length);
+    }
+
+    /**
+     * Updates the digest with given part of a byte array
+     *
+     * @param content Array containing content chunk
+     * @param offset  Offset of the chunk in the array
+     * @param length  Length of the chunk
+     * @return This digester
+     */
+    public StreamingDigester update(byte[] content, int offset, int length) {
+        if (isParallel(length)) {
+            runParallel(messageDigest -> messageDigest.update(content, offset, length));
+        } else if (messageDigests.size() == 1) {
+            messageDigests.get(0).update(content, offset, length);
+        } else {
+            // blocks are small enough to stay in CPU cache when read by subsequent digests
+            for (var blockOffset = offset; blockOffset < offset + length; blockOffset += CACHE_BLOCK_SIZE) {
+                var blockLength = Math.min(CACHE_BLOCK_SIZE, offset + length - blockOffset);
+
+                for (var messageDigest : messageDigests) {
+                    messageDigest.update(content, blockOffset, blockLength);
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Updates the digest with remaining bytes of given buffer. Heap and direct buffers are supported.
+     * <p>
+     * Buffer's position is moved to its limit.
+     *
+     * @param content Buffer containing content chunk
+     * @return This digester
+     */
+    public StreamingDigester update(ByteBuffer content) {
+        if (isParallel(content.remaining())) {
+            runParallel(messageDigest -> messageDigest.update(content.duplicate()));
+            content.position(content.limit());
+        } else {
+            var limit = content.limit();
+
+            while (content.hasRemaining()) {
+                var blockStart = content.position();
+                var blockEnd = Math.min(limit, blockStart + CACHE_BLOCK_SIZE);
+                content.limit(blockEnd);
+
+                for (var messageDigest : messageDigests) {
+                    content.position(blockStart);
+                    messageDigest.update(content);
+                }
+
+                content.limit(limit);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Updates the digest with all bytes read from given stream, until the end of the stream. The stream is not closed.
+     *
+     * @param content Stream to read the content from
+     * @return This digester
+     * @throws IOException Thrown by the stream
+     */
+    public StreamingDigester update(InputStream content) throws IOException {
+        var buffer = new byte[BUFFER_SIZE];
+        int length;
+
+        while ((length = content.read(buffer)) >= 0) {
+            update(buffer, 0, length);
+        }
+
+        return this;
+    }
+
+    /**
+     * Updates the digest with all bytes read from given channel, until the end of the stream. The channel is not closed.
+     * <p>
+     * The channel must be in blocking mode.
+     *
+     * @param content Channel to read the content from
+     * @return This digester
+     * @throws IOException Thrown by the channel
+     */
+    public StreamingDigester update(ReadableByteChannel content) throws IOException {
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        while (content.read(buffer) >= 0) {
+            buffer.flip();
+            update(buffer);
+            buffer.clear();
+        }
+
+        return this;
+    }
+
+    /**
+     * Completes digest calculation and returns value of a digest header, which can be directly copied to <em>Content-Digest</em> or
+     * <em>Repr-Digest</em> header. The digester is reset.
+     *
+     * @return Digest header value
+     */
+    public String finish() {
+        var digestMap = new LinkedHashMap<String, byte[]>();
+
+        for (var entry : finishDigests().entrySet()) {
+            digestMap.put(entry.getKey().getHttpKey(), entry.getValue());
+        }
+
+        return StructuredDictionary.of(digestMap).serialize();
+    }
+
+    /**
+     * Completes digest calculation and returns calculated digests. The digester is reset.
+     *
+     * @return Map of algorithms to digests, in order of algorithms provided when creating this digester
+     */
+    Map<DigestAlgorithm, byte[]> finishDigests() {
+        var digests = new LinkedHashMap<DigestAlgorithm, byte[]>();
+
+        for (var i = 0; i < algorithms.size(); i++) {
+            digests.put(algorithms.get(i), messageDigests.get(i).digest());
+        }
+
+        return digests;
+    }
+
+    /**
+     * Returns algorithms used by this digester
+     *
+     * @return Digest algorithms
+     */
+    List<DigestAlgorithm> getAlgorithms() {
+        return algorithms;
+    }
+
+    /**
+     * Returns policy applied when verifying digests calculated by this digester
+     *
+     * @return Digest verification policy
+     */
+    DigestVerificationPolicy getVerificationPolicy() {
+        return verificationPolicy;
+    }
+
+    private boolean isParallel(int length) {
+        return executor != null && messageDigests.size() > 1 && length >= PARALLEL_THRESHOLD;
+    }
+
+    private void runParallel(Consumer<MessageDigest> digestUpdate) {
+        var tasks = new CompletableFuture<?>[messageDigests.size()];
+
+        for (var i = 0; i < tasks.length; i++) {
+            var messageDigest = messageDigests.get(i);
+            tasks[i] = CompletableFuture.runAsync(() -> digestUpdate.accept(messageDigest), executor);
+        }
+
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private static MessageDigest createMessageDigest(DigestAlgorithm algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm.getJvmName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+
+/**
+ * Verifies signatures of many messages by using the same verification policy.
+ * <p>
+ * The policy is given as {@link VerificationSpec}. All its settings, including the public key getter, are applied to each verified message,
+ * except the Signature Context, which is replaced by Signature Context of each message.
+ * <p>
+ * Messages are processed in windows of {@value #WINDOW_SIZE}, so that working data, i.e. parsed signatures and signature bases, is kept only for
+ * messages of the current window. Results of all messages, which refer to their Signature Contexts, and public keys fetched for all
+ * <em>keyid</em>s are kept until the whole batch is verified, so memory usage still grows with the batch size. Within a batch, the public key
+ * getter is called once per <em>keyid</em>, and signatures are verified grouped by <em>keyid</em>, so that signature engines initialized with
+ * the same key are reused. When an {@link Executor} is provided, parsing and verification of each window are split into tasks run by the executor.
+ * <p>
+ * Unchecked exceptions thrown when verifying a message are reported as the result of that message, with
+ * {@link SignatureException.ErrorCode#UNEXPECTED_EXCEPTION}.
+ * <p>
+ * Objects of this class are immutable and thread-safe, provided that the public key getter is thread-safe.
+ *
+ * @see VerificationSpec
+ */
+public final class BatchVerifier {
+    /**
+     * Number of messages fully verified before proceeding with next messages
+     */
+    static final int WINDOW_SIZE = 4096;
+
+    /**
+     * Number of messages processed by a single executor task
+     */
+    static final int CHUNK_SIZE = 256;
+
+    private final VerificationSpec verificationSpec;
+    private final Executor executor;
+
+    private BatchVerifier(VerificationSpec verificationSpec, Executor executor) {
+        this.verificationSpec = verificationSpec;
+        this.executor = executor;
+    }
+
+    /**
+     * Verifies signatures of given messages
+     *
+     * @param signatureContexts Signature Contexts of verified messages
+     * @return Verification results, in the same order as given Signature Contexts
+     */
+    public List<VerificationResult> verify(Collection<SignatureContext> signatureContexts) {
+        return verify(signatureContexts.iterator());
+    }
+
+    /**
+     * Verifies signatures of messages provided by given stream
+     *
+     * @param signatureContexts Stream of Signature Contexts of verified messages
+     * @return Verification results, in the same order as Signature Contexts in the stream
+     */
+    public List<VerificationResult> verify(Stream<SignatureContext> signatureContexts) {
+        return verify(signatureContexts.iterator());
+    }
+
+    private List<VerificationResult> verify(Iterator<SignatureContext> signatureContexts) {
+        var results = new ArrayList<VerificationResult>();
+        var resolvedKeys = new HashMap<String, ResolvedKey>();
+        var window = new ArrayList<SignatureContext>(WINDOW_SIZE);
+
+        while (signatureContexts.hasNext()) {
+            window.add(signatureContexts.next());
+
+            if (window.size() == WINDOW_SIZE) {
+                verifyWindow(window, resolvedKeys, results);
+                window.clear();
+            }
+        }
+
+        if (!window.isEmpty()) {
+            verifyWindow(window, resolvedKeys, results);
+        }
+
+        return results;
+    }
+
+    private void verifyWindow(List<SignatureContext> signatureContexts, Map<String, ResolvedKey> resolvedKeys, List<VerificationResult> results) {
+        var size = signatureContexts.size();
+        var verifiers = new SignatureVerifier[size];
+        var exceptions = new SignatureException[size];
+
+        runInChunks(size, index -> {
+            var verifier = new SignatureVerifier(verificationSpec, signatureContexts.get(index));
+
+            try {
+                verifier.prepare();
+                verifiers[index] = verifier;
+            } catch (SignatureException e) {
+                exceptions[index] = e;
+            } catch (RuntimeException e) {
+                exceptions[index] = getUnexpectedException(e);
+            }
+        });
+
+        var keyIdGroups = new LinkedHashMap<String, List<Integer>>();
+
+        for (int index = 0; index < size; index++) {
+            if (verifiers[index] != null) {
+                keyIdGroups.computeIfAbsent(verifiers[index].getKeyId(), keyId -> new ArrayList<>()).add(index);
+            }
+        }
+
+        resolveKeys(keyIdGroups.keySet(), resolvedKeys);
+
+        var groupedIndexes = keyIdGroups.values().stream()
+                .flatMap(List::stream)
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        runInChunks(groupedIndexes.length, position -> {
+            var index = groupedIndexes[position];
+            var verifier = verifiers[index];
+
+            try {
+                resolvedKeys.get(verifier.getKeyId()).verify(verifier);
+            } catch (SignatureException e) {
+                exceptions[index] = e;
+            } catch (RuntimeException e) {
+                exceptions[index] = getUnexpectedException(e);
+            }
+        });
+
+        for (int index = 0; index < size; index++) {
+            results.add(new VerificationResult(signatureContexts.get(index), exceptions[index]));
+        }
+    }
+
+    /**
+     * Wraps an unchecked exception thrown when verifying a single message, so that it's reported as the result of that message rather than
+     * aborting verification of all messages
+     *
+     * @param exception Unchecked exception
+     * @return Signature exception with {@link SignatureException.ErrorCode#UNEXPECTED_EXCEPTION} code
+     */
+    static SignatureException getUnexpectedException(RuntimeException exception) {
+        return new SignatureException(SignatureException.ErrorCode.UNEXPECTED_EXCEPTION, "Unable to verify signature", exception);
+    }
+
+    private void resolveKeys(Collection<String> keyIds, Map<String, ResolvedKey> resolvedKeys) {
+        var futures = new LinkedHashMap<String, CompletableFuture<ResolvedKey>>();
+
+        for (var keyId : keyIds) {
+            if (!resolvedKeys.containsKey(keyId)) {
+                futures.put(keyId, CompletableFuture.supplyAsync(() -> resolveKey(keyId), executor));
+            }
+        }
+
+        await(futures.values());
+        futures.forEach((keyId, future) -> resolvedKeys.put(keyId, future.join()));
+    }
+
+    private ResolvedKey resolveKey(String keyId) {
+        try {
+            return new ResolvedKey(SignatureVerifier.getPublicKeyInfo(verificationSpec, keyId), null);
+        } catch (SignatureException e) {
+            return new ResolvedKey(null, e);
+        }
+    }
+
+    private void runInChunks(int count, IntConsumer task) {
+        var futures = new ArrayList<CompletableFuture<Void>>();
+
+        for (int start = 0; start < count; start += CHUNK_SIZE) {
+            var from = start;
+            var to = Math.min(count, start + CHUNK_SIZE);
+
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int index = from; index < to; index++) {
+                    task.accept(index);
+                }
+            }, executor));
+        }
+
+        await(futures);
+    }
+
+    /**
+     * Waits for completion of given futures. Unchecked exceptions thrown by the tasks are rethrown unwrapped.
+     *
+     * @param futures Futures to wait for
+     */
+    static void await(Collection<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns a builder used to construct {@link BatchVerifier} object
+     *
+     * @return A BatchVerifier builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder class to build {@link BatchVerifier} objects.
+     * <p>
+     * Verification Spec must be provided.
+     */
+    public static class Builder {
+        private VerificationSpec verificationSpec;
+        private Executor executor;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets verification policy
+         * <p>
+         * Signature Context of given Verification Spec is not used. It's replaced by Signature Context of each verified message.
+         *
+         * @param verificationSpec Verification Spec used for all verified messages
+         * @return This builder
+         */
+        public Builder verificationSpec(VerificationSpec verificationSpec) {
+            this.verificationSpec = verificationSpec;
+            return this;
+        }
+
+        /**
+         * Sets executor used to verify messages in parallel. By default, all messages are verified by the calling thread.
+         *
+         * @param executor Executor running verification tasks
+         * @return This builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Constructs {@link BatchVerifier} object from this builder
+         *
+         * @return BatchVerifier object
+         */
+        public BatchVerifier build() {
+            Objects.requireNonNull(verificationSpec, "VerificationSpec not provided");
+
+            return new BatchVerifier(verificationSpec, executor != null ? executor : Runnable::run);
+        }
+    }
+
+    /**
+     * String representation of this object
+     *
+     * @return String representation of this BatchVerifier
+     */
+    @Override
+    public String toString() {
+        return "BatchVerifier{" +
+                "verificationSpec=" + verificationSpec +
+                ", executor=" + executor +
+                '}';
+    }
+
+    private static final class ResolvedKey {
+        private final PublicKeyInfo publicKeyInfo;
+        private final SignatureException exception;
+
+        private ResolvedKey(PublicKeyInfo publicKeyInfo, SignatureException exception) {
+            this.publicKeyInfo = publicKeyInfo;
+            this.exception = exception;
+        }
+
+        private void verify(SignatureVerifier verifier) throws SignatureException {
+            if (exception != null) {
+                throw exception;
+            }
+
+            verifier.verifySignature(publicKeyInfo);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Public key getter caching results of another public key getter.
+ * <p>
+ * Intended to be used as {@link VerificationSpec.Builder#publicKeyGetter(CheckedFunction)} when fetching keys is expensive, e.g. requires a call to
+ * a remote service or a database, or when the keys are provided in encoded form. Features:
+ * <ul>
+ *     <li>Loaded {@link PublicKeyInfo} objects are kept for configured time-to-live</li>
+ *     <li>Encoded keys are decoded once, when loaded, if the key's algorithm is provided in {@link PublicKeyInfo}</li>
+ *     <li>Concurrent requests for the same <em>keyid</em> result in a single call to the underlying getter</li>
+ *     <li>Optionally, entries are refreshed in the background after configured time, while stale values are still returned</li>
+ *     <li>Optionally, exceptions thrown by the underlying getter, e.g. for unknown key IDs, are cached for configured time</li>
+ *     <li>Number of cached entries is limited</li>
+ * </ul>
+ * Requests with no <em>keyid</em> are passed to the underlying getter without caching.
+ * <p>
+ * Objects of this class are thread-safe. They should be created once and shared by all verifications.
+ */
+public final class CachingPublicKeyGetter implements CheckedFunction<String, PublicKeyInfo> {
+    private final CheckedFunction<String, PublicKeyInfo> publicKeyGetter;
+    private final int maximumSize;
+    private final int evictionTarget;
+    private final long timeToLiveNanos;
+    private final long refreshAfterNanos;
+    private final long negativeTimeToLiveNanos;
+    private final Executor executor;
+    private final LongSupplier ticker;
+    private final ConcurrentMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private CachingPublicKeyGetter(CheckedFunction<String, PublicKeyInfo> publicKeyGetter, int maximumSize, long timeToLiveNanos,
+                                   long refreshAfterNanos, long negativeTimeToLiveNanos, Executor executor, LongSupplier ticker) {
+        this.publicKeyGetter = publicKeyGetter;
+        this.maximumSize = maximumSize;
+        this.evictionTarget = maximumSize - maximumSize / 10;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.refreshAfterNanos = refreshAfterNanos;
+        this.negativeTimeToLiveNanos = negativeTimeToLiveNanos;
+        this.executor = executor;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Returns {@link PublicKeyInfo} for given key ID, from the cache or from the underlying getter
+     *
+     * @param keyId Key ID, taken from <em>keyid</em> signature parameter
+     * @return Public Key Info
+     * @throws Exception Exception thrown by the underlying getter, {@link SignatureException} wrapping an exception thrown for another call,
+     *                   e.g. a cached one, or {@link SignatureException} when the key cannot be decoded
+     */
+    @Override
+    public PublicKeyInfo apply(String keyId) throws Exception {
+        if (keyId == null) {
+            return publicKeyGetter.apply(null);
+        }
+
+        while (true) {
+            var entry = entries.get(keyId);
+
+            if (entry == null) {
+                var newEntry = new CacheEntry();
+                entry = entries.putIfAbsent(keyId, newEntry);
+
+                if (entry == null) {
+                    return load(keyId, newEntry);
+                }
+            }
+
+            if (!entry.result.isDone()) {
+                return getResult(entry);
+            }
+
+            var age = ticker.getAsLong() - entry.loadedAt;
+
+            if (age < (entry.result.isCompletedExceptionally() ? negativeTimeToLiveNanos : timeToLiveNanos)) {
+                if (refreshAfterNanos > 0 && age >= refreshAfterNanos && !entry.result.isCompletedExceptionally()) {
+                    refresh(keyId, entry);
+                }
+
+                return getResult(entry);
+            }
+
+            entries.remove(keyId, entry);
+        }
+    }
+
+    /**
+     * Removes cached entry for given key ID
+     *
+     * @param keyId Key ID
+     */
+    public void invalidate(String keyId) {
+        entries.remove(keyId);
+    }
+
+    /**
+     * Removes all cached entries
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Returns number of cached entries, including expired and being loaded ones
+     *
+     * @return Number of cached entries
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private PublicKeyInfo load(String keyId, CacheEntry entry) throws Exception {
+        try {
+            var publicKeyInfo = loadAndDecode(keyId);
+            entry.loadedAt = ticker.getAsLong();
+            entry.result.complete(publicKeyInfo);
+            evictIfNeeded();
+            return publicKeyInfo;
+        } catch (Exception e) {
+            entry.loadedAt = ticker.getAsLong();
+            entry.result.completeExceptionally(e);
+
+            if (negativeTimeToLiveNanos <= 0) {
+                entries.remove(keyId, entry);
+            } else {
+                evictIfNeeded();
+            }
+
+            throw e;
+        } catch (Throwable t) {
+            entries.remove(keyId, entry);
+            entry.result.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    private void refresh(String keyId, CacheEntry entry) {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        var publicKeyInfo = loadAndDecode(keyId);
+                        var refreshedEntry = new CacheEntry();
+                        refreshedEntry.loadedAt = ticker.getAsLong();
+                        refreshedEntry.result.complete(publicKeyInfo);
+                        entries.replace(keyId, entry, refreshedEntry);
+                    } catch (Exception e) {
+                        // stale value is used until it expires
+                        entry.refreshing.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                entry.refreshing.set(false);
+            }
+        }
+    }
+
+    private PublicKeyInfo loadAndDecode(String keyId) throws Exception {
+        var publicKeyInfo = Objects.requireNonNull(publicKeyGetter.apply(keyId), "Public key getter returned null");
+        var algorithm = publicKeyInfo.getAlgorithm();
+
+        if (algorithm != null) {
+            return PublicKeyInfo.builder()
+                    .algorithm(algorithm)
+                    .publicKey(publicKeyInfo.getPublicKey(algorithm.getKeyAlgorithm()))
+                    .build();
+        } else {
+            return publicKeyInfo;
+        }
+    }
+
+    /**
+     * Removes expired entries and then the oldest ones, down to {@link #evictionTarget}, so that the entries are scanned once per many loads
+     * rather than on each load. Only one thread evicts at a time.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() <= maximumSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            var now = ticker.getAsLong();
+            var loadedEntries = new ArrayList<Map.Entry<String, CacheEntry>>();
+
+            for (var mapEntry : entries.entrySet()) {
+                var entry = mapEntry.getValue();
+
+                if (!entry.result.isDone()) {
+                    continue;
+                }
+
+                if (now - entry.loadedAt >= (entry.result.isCompletedExceptionally() ? negativeTimeToLiveNanos : timeToLiveNanos)) {
+                    entries.remove(mapEntry.getKey(), entry);
+                } else {
+                    loadedEntries.add(mapEntry);
+                }
+            }
+
+            var excess = Math.min(entries.size() - evictionTarget, loadedEntries.size());
+
+            if (excess > 0) {
+                loadedEntries.sort(Comparator.comparingLong(mapEntry -> mapEntry.getValue().loadedAt));
+
+                for (var i = 0; i < excess; i++) {
+                    entries.remove(loadedEntries.get(i).getKey(), loadedEntries.get(i).getValue());
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Returns result of given entry, loaded by another call. Exception of the entry is shared by many calls, so a new {@link SignatureException}
+     * wrapping it is thrown for each call.
+     */
+    private static PublicKeyInfo getResult(CacheEntry entry) throws Exception {
+        try {
+            return entry.result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SignatureException) {
+                var cause = (SignatureException) e.getCause();
+                throw new SignatureException(cause.getErrorCode(), cause.getMessage(), cause);
+            } else if (e.getCause() instanceof Exception) {
+                throw new SignatureException(SignatureException.ErrorCode.INVALID_KEY, "Exception when fetching public key", e.getCause());
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a builder used to construct {@link CachingPublicKeyGetter} object
+     *
+     * @param publicKeyGetter Underlying public key getter, which loads keys missing in the cache
+     * @return A CachingPublicKeyGetter builder
+     */
+    public static Builder builder(CheckedFunction<String, PublicKeyInfo> publicKeyGetter) {
+        return new Builder(publicKeyGetter);
+    }
+
+    /**
+     * Builder class to build {@link CachingPublicKeyGetter} objects.
+     * <p>
+     * By default, up to 1000 keys are cached for 1 hour, exceptions are not cached and entries are not refreshed in the background.
+     */
+    public static class Builder {
+        private final CheckedFunction<String, PublicKeyInfo> publicKeyGetter;
+        private int maximumSize = 1000;
+        private int timeToLive = 3600;
+        private int refreshAfter;
+        private int negativeTimeToLive;
+        private Executor executor = ForkJoinPool.commonPool();
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder(CheckedFunction<String, PublicKeyInfo> publicKeyGetter) {
+            this.publicKeyGetter = Objects.requireNonNull(publicKeyGetter, "Public key getter not provided");
+        }
+
+        /**
+         * Sets maximum number of cached keys. When exceeded, expired entries and then the oldest entries are removed, down to 90% of the limit.
+         * Keys being loaded are never removed, so the limit can be temporarily exceeded by the number of concurrent loads.
+         *
+         * @param maximumSize Maximum number of cached keys
+         * @return This builder
+         */
+        public Builder maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets time after which a loaded key is removed from the cache
+         *
+         * @param timeToLiveSeconds Time-to-live in seconds
+         * @return This builder
+         */
+        public Builder timeToLive(int timeToLiveSeconds) {
+            this.timeToLive = timeToLiveSeconds;
+            return this;
+        }
+
+        /**
+         * Sets time after which a loaded key is refreshed in the background.
+         * <p>
+         * Until the refresh completes, current value is returned. If the refresh fails, current value is used until it expires. Value should be
+         * shorter than {@link #timeToLive(int)}. By default, keys are not refreshed.
+         *
+         * @param refreshAfterSeconds Time in seconds after which the key is refreshed
+         * @return This builder
+         */
+        public Builder refreshAfter(int refreshAfterSeconds) {
+            this.refreshAfter = refreshAfterSeconds;
+            return this;
+        }
+
+        /**
+         * Sets time for which exceptions thrown by the underlying getter are cached, e.g. for unknown key IDs.
+         * <p>
+         * During this time, a {@link SignatureException} wrapping the cached exception is thrown for the key ID without calling the underlying
+         * getter. Error code of a cached {@link SignatureException} is retained, other exceptions are reported with
+         * {@link SignatureException.ErrorCode#INVALID_KEY}. By default, exceptions are not cached.
+         *
+         * @param negativeTimeToLiveSeconds Time-to-live of exceptions in seconds
+         * @return This builder
+         */
+        public Builder negativeTimeToLive(int negativeTimeToLiveSeconds) {
+            this.negativeTimeToLive = negativeTimeToLiveSeconds;
+            return this;
+        }
+
+        /**
+         * Sets executor used to refresh keys in the background. By default, {@link ForkJoinPool#commonPool()} is used.
+         *
+         * @param executor Executor for background refreshes
+         * @return This builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets time source, in nanoseconds. Used for testing.
+         *
+         * @param ticker Time source
+         * @return This builder
+         */
+        Builder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Constructs {@link CachingPublicKeyGetter} object from this builder
+         *
+         * @return CachingPublicKeyGetter object
+         */
+        public CachingPublicKeyGetter build() {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("Maximum size must be positive");
+            }
+
+            Objects.requireNonNull(executor, "Executor not provided");
+
+            return new CachingPublicKeyGetter(publicKeyGetter, maximumSize, TimeUnit.SECONDS.toNanos(timeToLive), TimeUnit.SECONDS.toNanos(refreshAfter),
+                    TimeUnit.SECONDS.toNanos(negativeTimeToLive), executor, ticker);
+        }
+    }
+
+    /**
+     * Cached result of the underlying getter
+     */
+    private static final class CacheEntry {
+        private final CompletableFuture<PublicKeyInfo> result = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long loadedAt;
+    }
+}
@@ -144,6 +144,30 @@ abstract class Component {
         }
     }
 
+    /**
+     * Returns true if value for this component can be computed for the context of given Component Values. Components which have to compute
+     * their values to check presence store computed values in Component Values, so they are not computed again.
+     *
+     * @param componentValues Values of the context to check, extracted so far
+     * @return True if the context contains value defined by this component
+     */
+    boolean isValuePresent(ComponentValues componentValues) {
+        if (!isValueComputedForPresence()) {
+            return isValuePresent(componentValues.getSignatureContext());
+        }
+
+        if (isFromRelatedRequest() && componentValues.getSignatureContext().getRelatedRequestContext() == null) {
+            return false;
+        }
+
+        try {
+            componentValues.get(this);
+            return true;
+        } catch (SignatureException e) {
+            return isValuePresentDespite(e);
+        }
+    }
+
     /**
      * Returns true if value for this component can be computed for given context, e.g. if the header defined by this component is present there.
      *
@@ -152,6 +176,26 @@ abstract class Component {
      */
     abstract boolean isValueInContext(SignatureContext signatureContext);
 
+    /**
+     * Returns true if presence of value of this component is checked by computing the value, e.g. for query parameters
+     *
+     * @return True if value has to be computed to check its presence
+     */
+    boolean isValueComputedForPresence() {
+        return false;
+    }
+
+    /**
+     * Returns true if value is considered present even though computing it failed with given exception, e.g. because of malformatted header.
+     * Used only when {@link #isValueComputedForPresence()} is true.
+     *
+     * @param exception Exception thrown when computing the value
+     * @return True if the value is considered present
+     */
+    boolean isValuePresentDespite(SignatureException exception) {
+        return false;
+    }
+
     private boolean isFromRelatedRequest() {
         return name.boolParam(RELATED_REQUEST_PARAM).orElse(false);
     }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Values of components extracted from a single message, computed at most once per component
+ * <p>
+ * Owned by {@link SignatureContext}, so that values are reused by presence checks of "used if present" components, signature base building
+ * and multiple signatures of the same message. Components are identified by their names, including parameters. Failed extractions are not
+ * remembered. Objects of this class are thread-safe; concurrent first uses of a component may compute its value more than once.
+ */
+final class ComponentValues {
+    private final SignatureContext signatureContext;
+    private final Map<Component, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * Creates empty component values of given message
+     *
+     * @param signatureContext Signature Context of the message
+     */
+    ComponentValues(SignatureContext signatureContext) {
+        this.signatureContext = signatureContext;
+    }
+
+    /**
+     * Returns value of given component, extracting it from the Signature Context if not extracted before
+     *
+     * @param component Component
+     * @return Component value to be included in signature base
+     * @throws SignatureException Thrown in case of missing or malformatted data in the context
+     * @see Component#extractValue(SignatureContext)
+     */
+    String get(Component component) throws SignatureException {
+        var value = values.get(component);
+
+        if (value == null) {
+            value = component.extractValue(signatureContext);
+            values.put(component, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns true if value of given component is present in the message
+     *
+     * @param component Component
+     * @return True if the Signature Context contains value defined by the component
+     * @see Component#isValuePresent(ComponentValues)
+     */
+    boolean isPresent(Component component) {
+        return values.containsKey(component) || component.isValuePresent(this);
+    }
+
+    /**
+     * Returns Signature Context from which the values are extracted
+     *
+     * @return Signature Context
+     */
+    SignatureContext getSignatureContext() {
+        return signatureContext;
+    }
+}
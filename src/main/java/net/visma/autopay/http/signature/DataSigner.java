@@ -21,7 +21,6 @@
  */
 package net.visma.autopay.http.signature;
 
-import javax.crypto.Mac;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
@@ -48,11 +47,28 @@ final class DataSigner {
     static byte[] sign(String text, PrivateKey privateKey, SignatureAlgorithm algorithm) throws SignatureException {
         var data = text.getBytes(StandardCharsets.UTF_8);
 
+        return sign(data, data.length, privateKey, algorithm);
+    }
+
+    /**
+     * Signs given signature base by using given algorithm and private key. Bytes of the signature base are passed to the signing engine without copying.
+     *
+     * @param signatureBase Signature base to be signed
+     * @param privateKey    Private key used for the signature
+     * @param algorithm     Used algorithm
+     * @return Signature bytes
+     * @throws SignatureException Problems with the private key, JMV not supporting given algorithm, etc.
+     */
+    static byte[] sign(SignatureBase signatureBase, PrivateKey privateKey, SignatureAlgorithm algorithm) throws SignatureException {
+        return sign(signatureBase.getBuffer(), signatureBase.getLength(), privateKey, algorithm);
+    }
+
+    private static byte[] sign(byte[] data, int length, PrivateKey privateKey, SignatureAlgorithm algorithm) throws SignatureException {
         try {
             if (algorithm.getKeyAlgorithm().isSymmetric()) {
-                return signHmac(data, privateKey, algorithm);
+                return signHmac(data, length, privateKey, algorithm);
             } else {
-                return signAsymmetric(data, privateKey, algorithm);
+                return signAsymmetric(data, length, privateKey, algorithm);
             }
         } catch (NoSuchAlgorithmException e) {
             throw new SignatureException(SignatureException.ErrorCode.UNKNOWN_ALGORITHM, "Unknown algorithm " + algorithm.getJvmName(), e);
@@ -64,11 +80,12 @@ final class DataSigner {
     }
 
     /**
-     * Creates and populates parameters of {@link Signature} object. Checks if used elliptic curve matches the algorithm.
+     * Returns {@link Signature} object with populated parameters, taken from {@link SignatureEngineCache}. Checks if used elliptic curve matches
+     * the algorithm.
      *
      * @param key Public or private key to check
      * @param algorithm Signature algorithm
-     * @return Created {@link Signature} object
+     * @return {@link Signature} object to be initialized with given key
      * @throws InvalidKeyException EC key does not match the algorithm
      * @throws NoSuchAlgorithmException Signature algorithm not found in JVM
      * @throws InvalidAlgorithmParameterException Invalid signature parameter
@@ -79,30 +96,25 @@ final class DataSigner {
             EllipticCurveValidator.validate((ECKey) key, algorithm);
         }
 
-        var signatureObject = Signature.getInstance(algorithm.getJvmName());
-
-        if (algorithm.getParameterSpec() != null) {
-            signatureObject.setParameter(algorithm.getParameterSpec());
-        }
-
-        return signatureObject;
+        return SignatureEngineCache.getSignature(algorithm, key);
     }
 
-    private static byte[] signAsymmetric(byte[] data, PrivateKey privateKey, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException,
+    private static byte[] signAsymmetric(byte[] data, int length, PrivateKey privateKey, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException,
             InvalidAlgorithmParameterException, InvalidKeyException, java.security.SignatureException {
 
         var signatureObject = createSignatureObject(privateKey, algorithm);
         signatureObject.initSign(privateKey);
-        signatureObject.update(data);
+        signatureObject.update(data, 0, length);
 
         return signatureObject.sign();
     }
 
-    private static byte[] signHmac(byte[] data, PrivateKey privateKey, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException, InvalidKeyException {
-        var mac = Mac.getInstance(algorithm.getJvmName());
-        mac.init(privateKey);
+    private static byte[] signHmac(byte[] data, int length, PrivateKey privateKey, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException,
+            InvalidKeyException {
+        var mac = SignatureEngineCache.getInitializedMac(algorithm, privateKey);
+        mac.update(data, 0, length);
 
-        return mac.doFinal(data);
+        return mac.doFinal();
     }
 
     private DataSigner() {
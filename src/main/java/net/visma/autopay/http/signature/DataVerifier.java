@@ -21,7 +21,6 @@
  */
 package net.visma.autopay.http.signature;
 
-import javax.crypto.Mac;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
@@ -46,13 +45,33 @@ final class DataVerifier {
      */
     static boolean verify(String text, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm) throws SignatureException {
         var data = text.getBytes(StandardCharsets.UTF_8);
+
+        return verify(data, data.length, signature, publicKey, algorithm);
+    }
+
+    /**
+     * Verifies given signature against given signature base, using given algorithm and public key. Bytes of the signature base are passed to
+     * the verification engine without copying.
+     *
+     * @param signatureBase Signature base to verify against
+     * @param signature     Signature to verify
+     * @param publicKey     Public key object
+     * @param algorithm     Used algorithm
+     * @return True when the signature verified OK, false when it's incorrect
+     * @throws SignatureException Problems with the public key, JMV not supporting given algorithm, etc.
+     */
+    static boolean verify(SignatureBase signatureBase, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm) throws SignatureException {
+        return verify(signatureBase.getBuffer(), signatureBase.getLength(), signature, publicKey, algorithm);
+    }
+
+    private static boolean verify(byte[] data, int length, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm) throws SignatureException {
         boolean ok;
 
         try {
             if (algorithm.getKeyAlgorithm().isSymmetric()) {
-                ok = verifyHmac(data, signature, publicKey, algorithm);
+                ok = verifyHmac(data, length, signature, publicKey, algorithm);
             } else {
-                ok = verifyAsymmetric(data, signature, publicKey, algorithm);
+                ok = verifyAsymmetric(data, length, signature, publicKey, algorithm);
             }
 
             return ok;
@@ -66,21 +85,21 @@ final class DataVerifier {
         }
     }
 
-    private static boolean verifyAsymmetric(byte[] data, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm)
+    private static boolean verifyAsymmetric(byte[] data, int length, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm)
             throws NoSuchAlgorithmException, InvalidAlgorithmParameterException, InvalidKeyException, java.security.SignatureException {
 
         var signatureObject = DataSigner.createSignatureObject(publicKey, algorithm);
         signatureObject.initVerify(publicKey);
-        signatureObject.update(data);
+        signatureObject.update(data, 0, length);
 
         return signatureObject.verify(signature);
     }
 
-    private static boolean verifyHmac(byte[] data, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException,
-            InvalidKeyException {
-        var mac = Mac.getInstance(algorithm.getJvmName());
-        mac.init(publicKey);
-        var dataSignature = mac.doFinal(data);
+    private static boolean verifyHmac(byte[] data, int length, byte[] signature, PublicKey publicKey, SignatureAlgorithm algorithm)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        var mac = SignatureEngineCache.getInitializedMac(algorithm, publicKey);
+        mac.update(data, 0, length);
+        var dataSignature = mac.doFinal();
 
         return Arrays.equals(dataSignature, signature);
     }
@@ -187,6 +187,11 @@ final class DerivedComponent extends Component {
         }
     }
 
+    @Override
+    boolean isValueComputedForPresence() {
+        return componentType == DerivedComponentType.QUERY_PARAM;
+    }
+
     private boolean isPathInContext(String path) {
         return path != null && !path.isEmpty();
     }
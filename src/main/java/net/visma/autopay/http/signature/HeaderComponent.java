@@ -22,10 +22,10 @@
 package net.visma.autopay.http.signature;
 
 import net.visma.autopay.http.signature.SignatureException.ErrorCode;
+import net.visma.autopay.http.structured.ParserLimits;
 import net.visma.autopay.http.structured.StructuredBytes;
 import net.visma.autopay.http.structured.StructuredDictionary;
 import net.visma.autopay.http.structured.StructuredException;
-import net.visma.autopay.http.structured.StructuredField;
 import net.visma.autopay.http.structured.StructuredItem;
 import net.visma.autopay.http.structured.StructuredString;
 
@@ -33,6 +33,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -188,6 +189,16 @@ final class HeaderComponent extends Component {
         }
     }
 
+    @Override
+    boolean isValueComputedForPresence() {
+        return dictionaryKey != null;
+    }
+
+    @Override
+    boolean isValuePresentDespite(SignatureException exception) {
+        return exception.getErrorCode() != ErrorCode.MISSING_DICTIONARY_KEY && exception.getErrorCode() != ErrorCode.MISSING_HEADER;
+    }
+
     private String getBinaryWrapped(List<String> headerValues) {
         return headerValues.stream()
                 .map(value -> StructuredBytes.of(value.getBytes(StandardCharsets.UTF_8)))
@@ -197,23 +208,21 @@ final class HeaderComponent extends Component {
 
     private String reSerializeStructuredField(String headerValue) throws SignatureException {
         try {
-            return StructuredField.parse(headerValue).serialize();
+            return StructuredFieldCache.reSerialize(headerName.toLowerCase(), headerValue);
         } catch (StructuredException e) {
-            throw new SignatureException(ErrorCode.INVALID_STRUCTURED_HEADER, "Cannot parse structured header " + headerName, e);
+            throw getParsingException("Cannot parse structured header " + headerName, e);
         }
     }
 
     private String getDictionaryMember(String headerValue) throws SignatureException {
-        StructuredDictionary dictionary;
+        Optional<StructuredItem> optionalKeyValue;
 
         try {
-            dictionary = StructuredDictionary.parse(headerValue);
+            optionalKeyValue = StructuredDictionary.findMember(headerValue, dictionaryKey, StructuredItem.class, ParserLimits.DEFAULT);
         } catch (StructuredException e) {
-            throw new SignatureException(ErrorCode.INVALID_STRUCTURED_HEADER, "Invalid structured dictionary " + headerName, e);
+            throw getParsingException("Invalid structured dictionary " + headerName, e);
         }
 
-        var optionalKeyValue = dictionary.getItem(dictionaryKey);
-
         if (optionalKeyValue.isPresent()) {
             return optionalKeyValue.get().serialize();
         } else {
@@ -221,6 +230,11 @@ final class HeaderComponent extends Component {
         }
     }
 
+    private static SignatureException getParsingException(String message, StructuredException e) {
+        var errorCode = e.getErrorCode() == StructuredException.ErrorCode.LIMIT_EXCEEDED ? ErrorCode.LIMIT_EXCEEDED : ErrorCode.INVALID_STRUCTURED_HEADER;
+        return new SignatureException(errorCode, message, e);
+    }
+
     private String getSingleValue(List<String> headerValues) {
         String headerValue;
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A result of calculation of multiple signatures of the same message
+ * <p>
+ * Contains values of <em>Signature-Input</em> and <em>Signature</em> headers with all signatures merged, and results of each signature.
+ *
+ * @see SignatureSpec#signAll(java.util.Collection)
+ */
+public final class MultiSignatureResult {
+    private final String signatureInput;
+    private final String signature;
+    private final Map<String, SignatureResult> results;
+
+    /**
+     * Creates Multi Signature Result object
+     *
+     * @param signatureInput Merged Signature Input to be copied to <em>Signature-Input</em> header
+     * @param signature      Merged Signature to be copied to <em>Signature</em> header
+     * @param results        Results of each signature, by signature label, in order of signing
+     */
+    MultiSignatureResult(String signatureInput, String signature, Map<String, SignatureResult> results) {
+        this.signatureInput = signatureInput;
+        this.signature = signature;
+        this.results = results;
+    }
+
+    /**
+     * Returns Signature Input of all signatures, to be copied to <em>Signature-Input</em> header
+     *
+     * @return Signature Input
+     */
+    public String getSignatureInput() {
+        return signatureInput;
+    }
+
+    /**
+     * Returns Signature of all signatures, to be copied to <em>Signature</em> header
+     *
+     * @return Signature
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Returns results of each signature. Their signature bases are provided only for specs which retain them.
+     *
+     * @return Unmodifiable map of signature labels to their results, in order of signing
+     */
+    public Map<String, SignatureResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Compares the specified object with this MultiSignatureResult for equality. Returns true if the given object is of the same class as this
+     * MultiSignatureResult, and all object fields are equal.
+     *
+     * @param obj Object to be compared with this MultiSignatureResult
+     * @return True is specified object is equal to this MultiSignatureResult
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        var that = (MultiSignatureResult) obj;
+        return Objects.equals(this.signatureInput, that.signatureInput) &&
+                Objects.equals(this.signature, that.signature) &&
+                Objects.equals(this.results, that.results);
+    }
+
+    /**
+     * Returns hash code for this MultiSignatureResult, which is composed of hash codes of all object fields
+     *
+     * @return The hash code for this MultiSignatureResult
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(signatureInput, signature, results);
+    }
+
+    /**
+     * String representation of this object
+     *
+     * @return String representation of this MultiSignatureResult
+     */
+    @Override
+    public String toString() {
+        return "MultiSignatureResult[" +
+                "signatureInput=" + signatureInput + ", " +
+                "signature=" + signature + ", " +
+                "results=" + results + ']';
+    }
+}
@@ -37,6 +37,7 @@ public class PublicKeyInfo {
     private final PublicKey publicKey;
     private final String stringPublicKey;
     private final byte[] bytePublicKey;
+    private volatile DecodedKey decodedKey;
 
     private PublicKeyInfo(SignatureAlgorithm algorithm, PublicKey publicKey, String stringPublicKey, byte[] bytePublicKey) {
         this.algorithm = algorithm;
@@ -60,6 +61,7 @@ public class PublicKeyInfo {
      * If {@link PublicKey} object has been provided in the builder, then it is returned.
      * If encoded key has been provided, as byte[] or String, it is decoded to {@link PublicKey} object.
      * In this case the {@link SignatureAlgorithm} must be provided as a parameter of this method or when building this {@link PublicKeyInfo} object.
+     * Decoded key is kept, so it's decoded only once as long as the same key algorithm is requested.
      *
      * @param algorithm Signature algorithm to decode the key. Must be provided if the key stored in this object is in encoded form and algorithm has not been
      *                  provided when building this object.
@@ -69,11 +71,24 @@ public class PublicKeyInfo {
     PublicKey getPublicKey(SignatureKeyAlgorithm algorithm) throws SignatureException {
         if (publicKey != null) {
             return publicKey;
-        } else if (stringPublicKey != null) {
-            return SignatureKeyFactory.decodePublicKey(stringPublicKey, algorithm);
+        }
+
+        var currentDecodedKey = decodedKey;
+
+        if (currentDecodedKey != null && currentDecodedKey.algorithm == algorithm) {
+            return currentDecodedKey.publicKey;
+        }
+
+        PublicKey newPublicKey;
+
+        if (stringPublicKey != null) {
+            newPublicKey = SignatureKeyFactory.decodePublicKey(stringPublicKey, algorithm);
         } else {
-            return SignatureKeyFactory.decodePublicKey(bytePublicKey, algorithm);
+            newPublicKey = SignatureKeyFactory.decodePublicKey(bytePublicKey, algorithm);
         }
+
+        decodedKey = new DecodedKey(algorithm, newPublicKey);
+        return newPublicKey;
     }
 
 
@@ -172,6 +187,19 @@ public class PublicKeyInfo {
         }
     }
 
+    /**
+     * Public key decoded for a key algorithm
+     */
+    private static final class DecodedKey {
+        private final SignatureKeyAlgorithm algorithm;
+        private final PublicKey publicKey;
+
+        private DecodedKey(SignatureKeyAlgorithm algorithm, PublicKey publicKey) {
+            this.algorithm = algorithm;
+            this.publicKey = publicKey;
+        }
+    }
+
     /**
      * String representation of this object. It does not contain public key data.
      *
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Signature base encoded as UTF-8 bytes, built directly into a growing byte buffer.
+ * <p>
+ * The buffer is passed to signing and verification engines without intermediate copies. Signature base text is only decoded when requested by
+ * {@link #toString()}.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#create-sig-input">Creating the Signature Base</a>
+ */
+final class SignatureBase {
+    private static final int INITIAL_CAPACITY = 512;
+
+    private byte[] buffer;
+    private int length;
+
+    SignatureBase() {
+        buffer = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Appends given text encoded as UTF-8. ASCII characters, which are expected in most cases, are copied without invoking a charset encoder.
+     *
+     * @param text Text to append
+     * @return This object
+     */
+    SignatureBase append(String text) {
+        var textLength = text.length();
+        ensureCapacity(textLength);
+
+        for (int i = 0; i < textLength; i++) {
+            var ch = text.charAt(i);
+
+            if (ch >= 0x80) {
+                appendEncoded(text.substring(i));
+                break;
+            }
+
+            buffer[length++] = (byte) ch;
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends given ASCII character
+     *
+     * @param ch ASCII character to append
+     * @return This object
+     */
+    SignatureBase append(char ch) {
+        if (ch >= 0x80) {
+            return append(String.valueOf(ch));
+        }
+
+        ensureCapacity(1);
+        buffer[length++] = (byte) ch;
+        return this;
+    }
+
+    /**
+     * Returns the internal buffer. Only first {@link #getLength()} bytes are valid.
+     *
+     * @return Internal byte buffer
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns number of bytes of the signature base
+     *
+     * @return Signature base length in bytes
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Decodes and returns signature base text
+     *
+     * @return Signature base
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void appendEncoded(String text) {
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int additionalLength) {
+        var requiredCapacity = length + additionalLength;
+
+        if (requiredCapacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(requiredCapacity, buffer.length * 2));
+        }
+    }
+}
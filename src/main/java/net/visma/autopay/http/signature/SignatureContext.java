@@ -24,6 +24,7 @@ package net.visma.autopay.http.signature;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -47,6 +48,7 @@ public class SignatureContext {
     private final Map<String, List<String>> headers;
     private final Map<String, List<String>> trailers;
     private final SignatureContext relatedRequestContext;
+    private volatile ComponentValues componentValues;
 
     private SignatureContext(Integer status, String method, URI targetUri, Map<String, List<String>> headers, Map<String, List<String>> trailers,
                              SignatureContext relatedRequestContext) {
@@ -114,6 +116,23 @@ public class SignatureContext {
         return relatedRequestContext;
     }
 
+    /**
+     * Returns values of components extracted from this context. Values are extracted lazily, on first use, and then reused by presence checks,
+     * signature base building and multiple signatures of this context.
+     *
+     * @return Component values of this context
+     */
+    ComponentValues getComponentValues() {
+        var values = componentValues;
+
+        if (values == null) {
+            values = new ComponentValues(this);
+            componentValues = values;
+        }
+
+        return values;
+    }
+
     /**
      * Returns builder used to construct {@link SignatureContext} object
      *
@@ -374,7 +393,14 @@ public class SignatureContext {
          * @return SignatureContext object
          */
         public SignatureContext build() {
-            return new SignatureContext(status, method, targetUri, headers, trailers, relatedRequestContext);
+            return new SignatureContext(status, method, targetUri, copyOf(headers), copyOf(trailers), relatedRequestContext);
+        }
+
+        // Built context memoizes component values, so it must not see modifications made to this builder afterwards
+        private static Map<String, List<String>> copyOf(Map<String, List<String>> container) {
+            var copy = new HashMap<String, List<String>>(container.size() * 4 / 3 + 1);
+            container.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+            return Collections.unmodifiableMap(copy);
         }
 
         private void populateHeadersOrTrailers(Map<String, List<String>> container, Map<String, ?> fields) {
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import javax.crypto.Mac;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-local cache of {@link Signature} and {@link Mac} engines.
+ * <p>
+ * Obtaining engines by {@link Signature#getInstance(String)} and {@link Mac#getInstance(String)} requires security provider lookup, which is
+ * synchronized and allocates new objects. Cached engines are re-initialized with a key by the caller before each use.
+ * <p>
+ * A security provider is bound to an engine when it's initialized for the first time, depending on the key. Engines are therefore cached per
+ * algorithm and class of the key. The cache is enabled by default. It can be disabled by setting {@value #ENABLED_PROPERTY} system property to
+ * <em>false</em>, e.g. when security providers are changed at runtime.
+ * <p>
+ * Optionally, {@link Mac} objects already initialized with HMAC keys can be cached, so that padded key state is not recomputed for each signature.
+ * This cache is disabled by default. It's enabled by setting {@value #HMAC_KEY_CACHE_SIZE_PROPERTY} system property to the maximum number of keys
+ * cached by each thread. Keys are compared by identity, so the same key objects should be used for signing or verifying, e.g. a
+ * {@link SignatureTemplate} or {@link PublicKeyInfo} objects with {@link java.security.PublicKey} built once.
+ */
+final class SignatureEngineCache {
+    /**
+     * System property used to disable the cache
+     */
+    static final String ENABLED_PROPERTY = "net.visma.autopay.http.signature.engineCache";
+
+    /**
+     * System property used to enable the cache of initialized HMAC engines, and to set its per-thread size
+     */
+    static final String HMAC_KEY_CACHE_SIZE_PROPERTY = "net.visma.autopay.http.signature.hmacKeyCacheSize";
+
+    private static final ThreadLocal<Map<SignatureAlgorithm, CachedEngine<Signature>>> SIGNATURES =
+            ThreadLocal.withInitial(() -> new EnumMap<>(SignatureAlgorithm.class));
+    private static final ThreadLocal<Map<SignatureAlgorithm, CachedEngine<Mac>>> MACS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(SignatureAlgorithm.class));
+    private static final ThreadLocal<Map<KeyReference, Mac>> INITIALIZED_MACS = ThreadLocal.withInitial(SignatureEngineCache::createInitializedMacMap);
+
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    private static volatile int hmacKeyCacheSize = Integer.getInteger(HMAC_KEY_CACHE_SIZE_PROPERTY, 0);
+
+    /**
+     * Returns {@link Signature} object for given algorithm, with signature parameters set. Returned object must be initialized with given key.
+     *
+     * @param algorithm Signature algorithm
+     * @param key       Private or public key which will be used to initialize returned object
+     * @return Signature object, cached or new one
+     * @throws NoSuchAlgorithmException Signature algorithm not found in JVM
+     * @throws InvalidAlgorithmParameterException Invalid signature parameter
+     */
+    static Signature getSignature(SignatureAlgorithm algorithm, Key key) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+        if (!enabled) {
+            return createSignature(algorithm);
+        }
+
+        var cachedEngine = SIGNATURES.get().get(algorithm);
+
+        if (cachedEngine == null || cachedEngine.keyClass != key.getClass()) {
+            cachedEngine = new CachedEngine<>(createSignature(algorithm), key.getClass());
+            SIGNATURES.get().put(algorithm, cachedEngine);
+        }
+
+        return cachedEngine.engine;
+    }
+
+    /**
+     * Returns {@link Mac} object for given algorithm. Returned object must be initialized with given key.
+     *
+     * @param algorithm Signature algorithm
+     * @param key       Key which will be used to initialize returned object
+     * @return Mac object, cached or new one
+     * @throws NoSuchAlgorithmException MAC algorithm not found in JVM
+     */
+    static Mac getMac(SignatureAlgorithm algorithm, Key key) throws NoSuchAlgorithmException {
+        if (!enabled) {
+            return Mac.getInstance(algorithm.getJvmName());
+        }
+
+        var cachedEngine = MACS.get().get(algorithm);
+
+        if (cachedEngine == null || cachedEngine.keyClass != key.getClass()) {
+            cachedEngine = new CachedEngine<>(Mac.getInstance(algorithm.getJvmName()), key.getClass());
+            MACS.get().put(algorithm, cachedEngine);
+        }
+
+        return cachedEngine.engine;
+    }
+
+    /**
+     * Returns {@link Mac} object for given algorithm, initialized with given key.
+     * <p>
+     * If the cache of initialized HMAC engines is enabled, then the engine is taken from the cache and just reset to its initial state.
+     * Otherwise, an engine from {@link #getMac(SignatureAlgorithm, Key)} is initialized with the key.
+     *
+     * @param algorithm Signature algorithm
+     * @param key       Key to initialize the engine with
+     * @return Initialized Mac object
+     * @throws NoSuchAlgorithmException MAC algorithm not found in JVM
+     * @throws InvalidKeyException      Key not accepted by the engine
+     */
+    static Mac getInitializedMac(SignatureAlgorithm algorithm, Key key) throws NoSuchAlgorithmException, InvalidKeyException {
+        if (hmacKeyCacheSize <= 0) {
+            var mac = getMac(algorithm, key);
+            mac.init(key);
+            return mac;
+        }
+
+        var initializedMacs = INITIALIZED_MACS.get();
+        var keyReference = new KeyReference(algorithm, key);
+        var mac = initializedMacs.get(keyReference);
+
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm.getJvmName());
+            mac.init(key);
+            initializedMacs.put(keyReference, mac);
+        } else {
+            mac.reset();
+        }
+
+        return mac;
+    }
+
+    /**
+     * Sets per-thread size of the cache of initialized HMAC engines. Size of 0 disables the cache.
+     *
+     * @param size Maximum number of keys cached by each thread
+     */
+    static void setHmacKeyCacheSize(int size) {
+        hmacKeyCacheSize = size;
+        INITIALIZED_MACS.remove();
+    }
+
+    /**
+     * Enables or disables the cache. Engines already cached by other threads are not removed, but they are not used when the cache is disabled.
+     *
+     * @param enabled True to enable the cache
+     */
+    static void setEnabled(boolean enabled) {
+        SignatureEngineCache.enabled = enabled;
+        SIGNATURES.remove();
+        MACS.remove();
+    }
+
+    /**
+     * Returns true if the cache is enabled
+     *
+     * @return True if the cache is enabled
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    private static Signature createSignature(SignatureAlgorithm algorithm) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+        var signatureObject = Signature.getInstance(algorithm.getJvmName());
+
+        if (algorithm.getParameterSpec() != null) {
+            signatureObject.setParameter(algorithm.getParameterSpec());
+        }
+
+        return signatureObject;
+    }
+
+    private static Map<KeyReference, Mac> createInitializedMacMap() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<KeyReference, Mac> eldest) {
+                return size() > hmacKeyCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Algorithm and key, compared by identity
+     */
+    private static final class KeyReference {
+        private final SignatureAlgorithm algorithm;
+        private final Key key;
+
+        private KeyReference(SignatureAlgorithm algorithm, Key key) {
+            this.algorithm = algorithm;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            var that = (KeyReference) o;
+            return algorithm == that.algorithm && key == that.key;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * algorithm.hashCode() + System.identityHashCode(key);
+        }
+    }
+
+    private static final class CachedEngine<T> {
+        private final T engine;
+        private final Class<?> keyClass;
+
+        private CachedEngine(T engine, Class<?> keyClass) {
+            this.engine = engine;
+            this.keyClass = keyClass;
+        }
+    }
+
+    private SignatureEngineCache() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -72,7 +72,8 @@ public class SignatureException extends Exception {
     public enum ErrorCode {
         /**
          * When verifying, provided signature does not match computed Signature Base and provided public key. It's syntactically correct but the value itself
-         * is not correct. Exceptions' message contains used algorithm and computed Signature Base.
+         * is not correct. Exceptions' message contains used algorithm, and computed Signature Base if requested by
+         * {@link VerificationSpec.Builder#signatureBaseInException(boolean)}.
          */
         INCORRECT_SIGNATURE,
 
@@ -159,6 +160,18 @@ public class SignatureException extends Exception {
          */
         DUPLICATE_TAG,
 
+        /**
+         * When verifying, <em>Signature-Input</em> or <em>Signature</em> header exceeds limits set in {@link VerificationSpec}, e.g. maximum header
+         * length, maximum number of signatures or parser limits
+         */
+        LIMIT_EXCEEDED,
+
+        /**
+         * When verifying many messages or signatures, an unchecked exception was thrown for one of them, e.g. by a key ID filter. The exception is
+         * available as the cause.
+         */
+        UNEXPECTED_EXCEPTION,
+
         /**
          * Generic security problem. Relates to {@link java.security.GeneralSecurityException}.
          */
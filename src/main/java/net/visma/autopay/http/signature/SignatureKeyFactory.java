@@ -33,6 +33,7 @@ import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.regex.Pattern;
 
 
 /**
@@ -44,6 +45,9 @@ import java.util.Base64;
  * Symmetric keys, for HMAC, are supported in their "raw" format - without any additional encoding.
  */
 final class SignatureKeyFactory {
+    private static final Pattern PEM_BOUNDARY_PATTERN = Pattern.compile("-----.*");
+    private static final Pattern LINE_BREAK_PATTERN = Pattern.compile("[\n\r]");
+
     /**
      * Decodes public key provided as String object
      * <p>
@@ -167,7 +171,7 @@ final class SignatureKeyFactory {
 
     private static byte[] decodePemKey(String pemKey) throws SignatureException {
         try {
-            var base64Key = pemKey.replaceAll("-----.*", "").replaceAll("[\n\r]", "");
+            var base64Key = LINE_BREAK_PATTERN.matcher(PEM_BOUNDARY_PATTERN.matcher(pemKey).replaceAll("")).replaceAll("");
             return Base64.getDecoder().decode(base64Key);
         } catch (Exception e) {
             throw new SignatureException(ErrorCode.INVALID_KEY, "Key not Base64-encoded", e);
@@ -179,7 +183,7 @@ final class SignatureKeyFactory {
         private final byte[] encodedKey;
 
         private HmacKey(byte[] encodedKey) {
-            this.encodedKey = encodedKey;
+            this.encodedKey = encodedKey.clone();
         }
 
         @Override
@@ -194,7 +198,8 @@ final class SignatureKeyFactory {
 
         @Override
         public byte[] getEncoded() {
-            return encodedKey;
+            // security providers may clear the returned array after use
+            return encodedKey.clone();
         }
 
         @Override
@@ -31,7 +31,8 @@ import java.util.Objects;
 public final class SignatureResult {
     private final String signatureInput;
     private final String signature;
-    private final String signatureBase;
+    private SignatureBase signatureBaseBytes;
+    private volatile String signatureBase;
 
     /**
      * Creates Signature Result object
@@ -46,6 +47,20 @@ public final class SignatureResult {
         this.signatureBase = signatureBase;
     }
 
+    /**
+     * Creates Signature Result object with signature base given as bytes. The signature base text is decoded on the first call to
+     * {@link #getSignatureBase()}.
+     *
+     * @param signatureInput Signature Input to be copied to <em>Signature-Input</em> header
+     * @param signature      Signature to be copied to <em>Signature</em> header
+     * @param signatureBase  Used signature base, or null when not retained
+     */
+    SignatureResult(String signatureInput, String signature, SignatureBase signatureBase) {
+        this.signatureInput = signatureInput;
+        this.signature = signature;
+        this.signatureBaseBytes = signatureBase;
+    }
+
     /**
      * Returns Signature Input to be copied to <em>Signature-Input</em> header
      *
@@ -66,13 +81,29 @@ public final class SignatureResult {
 
     /**
      * Returns signature base which can be used for logging or debugging
+     * <p>
+     * Signature base is converted to String on the first call. Returns null when signing was configured not to retain the signature base.
      *
-     * @return Signature Base
+     * @return Signature Base, or null when not retained
      * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-creating-the-signature-base">
      *      Creating the Signature Base</a>
      */
     public String getSignatureBase() {
-        return signatureBase;
+        var base = signatureBase;
+
+        if (base == null) {
+            synchronized (this) {
+                base = signatureBase;
+
+                if (base == null && signatureBaseBytes != null) {
+                    base = signatureBaseBytes.toString();
+                    signatureBase = base;
+                    signatureBaseBytes = null;
+                }
+            }
+        }
+
+        return base;
     }
 
     /**
@@ -93,7 +124,7 @@ public final class SignatureResult {
         var that = (SignatureResult) obj;
         return Objects.equals(this.signatureInput, that.signatureInput) &&
                 Objects.equals(this.signature, that.signature) &&
-                Objects.equals(this.signatureBase, that.signatureBase);
+                Objects.equals(this.getSignatureBase(), that.getSignatureBase());
     }
 
     /**
@@ -103,7 +134,7 @@ public final class SignatureResult {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(signatureInput, signature, signatureBase);
+        return Objects.hash(signatureInput, signature, getSignatureBase());
     }
 
     /**
@@ -116,7 +147,7 @@ public final class SignatureResult {
         return "SignatureResult[" +
                 "signatureInput=" + signatureInput + ", " +
                 "signature=" + signature + ", " +
-                "signatureBase=" + signatureBase + ']';
+                "signatureBase=" + getSignatureBase() + ']';
     }
 
 }
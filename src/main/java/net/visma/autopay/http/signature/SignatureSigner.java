@@ -29,6 +29,8 @@ import net.visma.autopay.http.structured.StructuredString;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -58,7 +60,78 @@ final class SignatureSigner {
         var signatureInputDict = StructuredDictionary.of(signatureSpec.getSignatureLabel(), signatureInputList);
         var signatureDict = StructuredDictionary.of(signatureSpec.getSignatureLabel(), byteSignature);
 
-        return new SignatureResult(signatureInputDict.serialize(), signatureDict.serialize(), signatureBase);
+        var retainedBase = signatureSpec.isRetainSignatureBase() ? signatureBase : null;
+
+        return new SignatureResult(signatureInputDict.serialize(), signatureDict.serialize(), retainedBase);
+    }
+
+    /**
+     * Given {@link SignatureSpec} objects computes their signatures and returns merged values to be copied to <em>Signature-Input</em> and
+     * <em>Signature</em> HTTP headers.
+     * <p>
+     * Value of each component is extracted once per Signature Context, even if the component is covered by many signatures.
+     * See {@link SignatureContext#getComponentValues()}.
+     *
+     * @param signatureSpecs Signature specifications, with distinct signature labels
+     * @return Merged header values and results of each signature
+     * @throws SignatureException Problems with calculation of any of the signatures
+     * @throws IllegalArgumentException No specifications provided or duplicate signature labels
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-multiple-signatures">Multiple Signatures</a>
+     */
+    static MultiSignatureResult signAll(Collection<SignatureSpec> signatureSpecs) throws SignatureException {
+        if (signatureSpecs.isEmpty()) {
+            throw new IllegalArgumentException("No Signature Specs provided");
+        }
+
+        var signatureInputs = new LinkedHashMap<String, StructuredInnerList>();
+        var signatures = new LinkedHashMap<String, byte[]>();
+        var results = new LinkedHashMap<String, SignatureResult>();
+        var signatureContext = signatureSpecs.iterator().next().getSignatureContext();
+
+        for (var signatureSpec : signatureSpecs) {
+            var label = signatureSpec.getSignatureLabel();
+
+            if (signatureInputs.containsKey(label)) {
+                throw new IllegalArgumentException("Duplicate signature label " + label);
+            }
+
+            if (!isSameMessage(signatureSpec.getSignatureContext(), signatureContext)) {
+                throw new IllegalArgumentException("Different Signature Context for signature label " + label);
+            }
+
+            var components = extractUsedComponents(signatureSpec);
+            var signatureInputList = getSignatureInput(components, signatureSpec.getParameters());
+            var signatureBase = getSignatureBase(components, signatureSpec.getSignatureContext(), signatureInputList);
+            var byteSignature = DataSigner.sign(signatureBase, signatureSpec.getPrivateKey(), signatureSpec.getParameters().getAlgorithm());
+            var retainedBase = signatureSpec.isRetainSignatureBase() ? signatureBase : null;
+
+            signatureInputs.put(label, signatureInputList);
+            signatures.put(label, byteSignature);
+            results.put(label, new SignatureResult(StructuredDictionary.of(label, signatureInputList).serialize(),
+                    StructuredDictionary.of(label, byteSignature).serialize(), retainedBase));
+        }
+
+        return new MultiSignatureResult(StructuredDictionary.of(signatureInputs).serialize(), StructuredDictionary.of(signatures).serialize(),
+                Collections.unmodifiableMap(results));
+    }
+
+    /**
+     * Checks whether given Signature Contexts describe the same message. Unlike {@link SignatureContext#equals(Object)}, trailers are compared
+     * as well, also of related requests.
+     *
+     * @param context Signature Context
+     * @param other   Other Signature Context
+     * @return True if both contexts have the same values
+     */
+    private static boolean isSameMessage(SignatureContext context, SignatureContext other) {
+        if (context == other) {
+            return true;
+        } else if (context == null || other == null) {
+            return false;
+        }
+
+        return context.equals(other) && context.getTrailers().equals(other.getTrailers())
+                && isSameMessage(context.getRelatedRequestContext(), other.getRelatedRequestContext());
     }
 
     /**
@@ -72,14 +145,15 @@ final class SignatureSigner {
      * @throws SignatureException In case of problems with extracting values from the Signature Context, e.g. missing or malformatted HTTP header
      * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#create-sig-input">Creating the Signature Base</a>
      */
-    static String getSignatureBase(List<Component> components, SignatureContext signatureContext, StructuredInnerList signatureInput)
+    static SignatureBase getSignatureBase(List<Component> components, SignatureContext signatureContext, StructuredInnerList signatureInput)
             throws SignatureException {
-        var baseBuilder = new StringBuilder();
+        var baseBuilder = new SignatureBase();
+        var componentValues = signatureContext.getComponentValues();
 
         for (var component : components) {
             baseBuilder.append(component.getName().serialize())
                     .append(": ")
-                    .append(component.extractValue(signatureContext))
+                    .append(componentValues.get(component))
                     .append("\n");
         }
 
@@ -88,12 +162,12 @@ final class SignatureSigner {
                 .append("\": ")
                 .append(signatureInput.serialize());
 
-        return baseBuilder.toString();
+        return baseBuilder;
     }
 
     private static List<Component> extractUsedComponents(SignatureSpec signatureSpec) {
         var optionalComponents = signatureSpec.getUsedIfPresentComponents().getComponents().stream()
-                .filter(component -> component.isValuePresent(signatureSpec.getSignatureContext()))
+                .filter(signatureSpec.getSignatureContext().getComponentValues()::isPresent)
                 .collect(Collectors.toList());
 
         var allComponents = signatureSpec.getComponents().getComponents();
@@ -122,7 +196,7 @@ final class SignatureSigner {
         return StructuredInnerList.withParams(items, parameterMap);
     }
 
-    private static StructuredItem parameterToStructuredItem(SignatureParameterType parameter, Object value) {
+    static StructuredItem parameterToStructuredItem(SignatureParameterType parameter, Object value) {
         switch (parameter) {
             case CREATED:
             case EXPIRES:
@@ -22,6 +22,7 @@
 package net.visma.autopay.http.signature;
 
 import java.security.PrivateKey;
+import java.util.Collection;
 import java.util.Objects;
 
 /**
@@ -45,15 +46,17 @@ public class SignatureSpec {
     private final SignatureContext signatureContext;
     private final PrivateKey privateKey;
     private final String signatureLabel;
+    private final boolean retainSignatureBase;
 
     private SignatureSpec(SignatureParameters parameters, SignatureComponents components, SignatureComponents usedIfPresentComponents,
-                          SignatureContext signatureContext, PrivateKey privateKey, String signatureLabel) {
+                          SignatureContext signatureContext, PrivateKey privateKey, String signatureLabel, boolean retainSignatureBase) {
         this.parameters = parameters;
         this.components = components;
         this.usedIfPresentComponents = usedIfPresentComponents;
         this.signatureContext = signatureContext;
         this.privateKey = privateKey;
         this.signatureLabel = signatureLabel;
+        this.retainSignatureBase = retainSignatureBase;
     }
 
     /**
@@ -70,6 +73,24 @@ public class SignatureSpec {
         return SignatureSigner.sign(this);
     }
 
+    /**
+     * Computes signatures according to given Signature Specs and returns merged values to be copied to <em>Signature-Input</em> and
+     * <em>Signature</em> HTTP headers, e.g. when signing a message with both old and new key during key rotation.
+     * <p>
+     * All specs must have equal Signature Contexts, including trailers, since signatures are merged into headers of one message. When specs share the same
+     * Signature Context object, value of each component is extracted once, even if it's covered by many signatures.
+     *
+     * @param signatureSpecs Signature specifications, with distinct signature labels
+     * @return Merged header values, and results of each signature. Signature bases are included in results of specs which retain them.
+     * @throws SignatureException Problems with calculation of any of the signatures. For detailed reason call
+     *                            {@link SignatureException#getErrorCode()}.
+     * @throws IllegalArgumentException No specifications provided, duplicate signature labels or different Signature Contexts
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-multiple-signatures">Multiple Signatures</a>
+     */
+    public static MultiSignatureResult signAll(Collection<SignatureSpec> signatureSpecs) throws SignatureException {
+        return SignatureSigner.signAll(signatureSpecs);
+    }
+
     /**
      * Returns Signature Parameters
      *
@@ -125,6 +146,15 @@ public class SignatureSpec {
         return signatureLabel;
     }
 
+    /**
+     * Returns whether the signature base should be retained in {@link SignatureResult}
+     *
+     * @return True if the signature base should be retained
+     */
+    boolean isRetainSignatureBase() {
+        return retainSignatureBase;
+    }
+
 
     /**
      * Returns a builder used to construct {@link SignatureSpec} object
@@ -151,6 +181,7 @@ public class SignatureSpec {
         private String stringPrivateKey;
         private byte[] bytePrivateKey;
         private String signatureLabel;
+        private boolean retainSignatureBase = true;
 
         private Builder() {
         }
@@ -257,6 +288,20 @@ public class SignatureSpec {
             return this;
         }
 
+        /**
+         * Sets whether the signature base is retained in produced {@link SignatureResult}. Defaults to true.
+         * <p>
+         * When set to false, {@link SignatureResult#getSignatureBase()} returns null. Useful for applications which don't log or debug signature bases.
+         * Even when retained, the signature base is kept as bytes and converted to String only when requested.
+         *
+         * @param retainSignatureBase True to retain the signature base, false to drop it after signing
+         * @return This builder
+         */
+        public Builder retainSignatureBase(boolean retainSignatureBase) {
+            this.retainSignatureBase = retainSignatureBase;
+            return this;
+        }
+
         /**
          * Constructs {@link SignatureSpec} object from this builder
          * <p>
@@ -281,7 +326,8 @@ public class SignatureSpec {
                 signatureContext = SignatureContext.builder().build();
             }
 
-            return new SignatureSpec(parameters, components, usedIfPresentComponents, signatureContext, getPrivateKey(), signatureLabel);
+            return new SignatureSpec(parameters, components, usedIfPresentComponents, signatureContext, getPrivateKey(), signatureLabel,
+                    retainSignatureBase);
         }
 
         private PrivateKey getPrivateKey() {
@@ -316,6 +362,7 @@ public class SignatureSpec {
                 ", signatureContext=" + signatureContext +
                 ", privateKey=" + privateKey.getClass() +
                 ", signatureLabel='" + signatureLabel + '\'' +
+                ", retainSignatureBase=" + retainSignatureBase +
                 '}';
     }
 
@@ -336,7 +383,8 @@ public class SignatureSpec {
         }
         var that = (SignatureSpec) o;
         return parameters.equals(that.parameters) && components.equals(that.components) && signatureContext.equals(that.signatureContext)
-                && privateKey.equals(that.privateKey) && signatureLabel.equals(that.signatureLabel);
+                && privateKey.equals(that.privateKey) && signatureLabel.equals(that.signatureLabel)
+                && retainSignatureBase == that.retainSignatureBase;
     }
 
     /**
@@ -346,6 +394,6 @@ public class SignatureSpec {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(parameters, components, signatureContext, privateKey, signatureLabel);
+        return Objects.hash(parameters, components, signatureContext, privateKey, signatureLabel, retainSignatureBase);
     }
 }
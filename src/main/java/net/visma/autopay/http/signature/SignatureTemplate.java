@@ -0,0 +1,478 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import net.visma.autopay.http.structured.StructuredDictionary;
+import net.visma.autopay.http.structured.StructuredInnerList;
+import net.visma.autopay.http.structured.StructuredItem;
+
+import java.security.PrivateKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Precompiled signature specification - all data needed to create a signature, except for the Signature Context.
+ * <p>
+ * Intended for applications signing many requests or responses with the same components, parameters, key and label. Component identifiers, static
+ * Signature Parameters and the label are serialized once, when building the template. When signing, only component values, dynamic parameters
+ * (<em>created</em>, <em>expires</em>, <em>nonce</em>) and the signature itself are computed.
+ * <p>
+ * Objects of this class are immutable and thread-safe. Produced {@link SignatureResult} is the same as the one produced by an equivalent
+ * {@link SignatureSpec}.
+ *
+ * @see SignatureSpec
+ */
+public class SignatureTemplate {
+    private static final String SIGNATURE_PARAMS_PREFIX = "\"" + DerivedComponentType.SIGNATURE_PARAMS.getIdentifier() + "\": ";
+
+    private final List<CompiledComponent> components;
+    private final List<CompiledComponent> usedIfPresentComponents;
+    private final String fixedComponentList;
+    private final String staticParameters;
+    private final ParameterSlot[] parameterOrder;
+    private final boolean timestamped;
+    private final Integer expiresAfter;
+    private final SignatureAlgorithm algorithm;
+    private final PrivateKey privateKey;
+    private final String signatureLabel;
+    private final String serializedLabel;
+    private final boolean retainSignatureBase;
+
+    private SignatureTemplate(List<CompiledComponent> components, List<CompiledComponent> usedIfPresentComponents, String staticParameters,
+                              ParameterSlot[] parameterOrder, Integer expiresAfter, SignatureAlgorithm algorithm, PrivateKey privateKey,
+                              String signatureLabel, boolean retainSignatureBase) {
+        this.components = components;
+        this.usedIfPresentComponents = usedIfPresentComponents;
+        this.fixedComponentList = usedIfPresentComponents.isEmpty() ? getComponentList(components) : null;
+        this.staticParameters = staticParameters;
+        this.parameterOrder = parameterOrder;
+        this.timestamped = Arrays.asList(parameterOrder).contains(ParameterSlot.CREATED) || expiresAfter != null;
+        this.expiresAfter = expiresAfter;
+        this.algorithm = algorithm;
+        this.privateKey = privateKey;
+        this.signatureLabel = signatureLabel;
+        this.serializedLabel = StructuredDictionary.of(signatureLabel, true).serialize();
+        this.retainSignatureBase = retainSignatureBase;
+    }
+
+    /**
+     * Computes the signature for given Signature Context and returns values to be copied to <em>Signature-Input</em> and <em>Signature</em> HTTP
+     * headers.
+     *
+     * @param signatureContext Signature Context with values obtained from signed request or response
+     * @return Signature result: values to be copied to <em>Signature-Input</em> and <em>Signature</em> headers, and signature base which could be used for
+     *         logging or debugging
+     * @throws SignatureException Problems with signature calculation, e.g. missing or malformatted values in Signature Context, problems with the private key.
+     *                            For detailed reason call {@link SignatureException#getErrorCode()}.
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-creating-a-signature">Creating a Signature</a>
+     */
+    public SignatureResult sign(SignatureContext signatureContext) throws SignatureException {
+        Objects.requireNonNull(signatureContext, "Signature context not provided");
+        var usedComponents = getUsedComponents(signatureContext);
+        var signatureInput = getSignatureInput(usedComponents);
+        var signatureBase = getSignatureBase(usedComponents, signatureContext, signatureInput);
+
+        var byteSignature = DataSigner.sign(signatureBase, privateKey, algorithm);
+        var signature = serializedLabel + "=:" + Base64.getEncoder().encodeToString(byteSignature) + ':';
+
+        return new SignatureResult(serializedLabel + '=' + signatureInput, signature, retainSignatureBase ? signatureBase : null);
+    }
+
+    private List<CompiledComponent> getUsedComponents(SignatureContext signatureContext) {
+        if (usedIfPresentComponents.isEmpty()) {
+            return components;
+        }
+
+        var usedComponents = new ArrayList<>(components);
+
+        var componentValues = signatureContext.getComponentValues();
+
+        for (var compiledComponent : usedIfPresentComponents) {
+            if (componentValues.isPresent(compiledComponent.component)) {
+                usedComponents.add(compiledComponent);
+            }
+        }
+
+        return usedComponents;
+    }
+
+    private String getSignatureInput(List<CompiledComponent> usedComponents) {
+        var inputBuilder = new StringBuilder(fixedComponentList != null ? fixedComponentList : getComponentList(usedComponents));
+        var created = timestamped ? Instant.now().getEpochSecond() : 0;
+
+        for (var slot : parameterOrder) {
+            switch (slot) {
+                case CREATED:
+                    inputBuilder.append(';').append(SignatureParameterType.CREATED.getIdentifier()).append('=').append(created);
+                    break;
+                case EXPIRES:
+                    inputBuilder.append(';').append(SignatureParameterType.EXPIRES.getIdentifier()).append('=').append(created + expiresAfter);
+                    break;
+                case NONCE:
+                    // UUID without dashes contains only hex digits, so it does not need escaping
+                    inputBuilder.append(';').append(SignatureParameterType.NONCE.getIdentifier()).append("=\"")
+                            .append(UUID.randomUUID().toString().replace("-", "")).append('"');
+                    break;
+                case STATIC:
+                default:
+                    inputBuilder.append(staticParameters);
+            }
+        }
+
+        return inputBuilder.toString();
+    }
+
+    private static SignatureBase getSignatureBase(List<CompiledComponent> usedComponents, SignatureContext signatureContext, String signatureInput)
+            throws SignatureException {
+        var baseBuilder = new SignatureBase();
+        var componentValues = signatureContext.getComponentValues();
+
+        for (var compiledComponent : usedComponents) {
+            baseBuilder.append(compiledComponent.baseLinePrefix)
+                    .append(componentValues.get(compiledComponent.component))
+                    .append('\n');
+        }
+
+        return baseBuilder.append(SIGNATURE_PARAMS_PREFIX).append(signatureInput);
+    }
+
+    private static String getComponentList(List<CompiledComponent> usedComponents) {
+        var listBuilder = new StringBuilder("(");
+
+        for (var compiledComponent : usedComponents) {
+            if (listBuilder.length() > 1) {
+                listBuilder.append(' ');
+            }
+
+            listBuilder.append(compiledComponent.serializedName);
+        }
+
+        return listBuilder.append(')').toString();
+    }
+
+    /**
+     * Returns a builder used to construct {@link SignatureTemplate} object
+     *
+     * @return A SignatureTemplate builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder class to build {@link SignatureTemplate} objects.
+     * <p>
+     * Private key must be provided as either {@link PrivateKey} object, or PKCS#8-encoded byte[] or PKCS#8-Base64-encoded String.
+     * Signature parameters must be provided, and they must contain the signature algorithm.
+     * Signature label must be provided.
+     * <p>
+     * Signature parameters which change with each signature, like <em>created</em> or <em>nonce</em>, should be requested by {@link #createdNow()},
+     * {@link #expiresAfter(int)} and {@link #randomNonce()} methods of this builder. Like {@link SignatureSpec}, which keeps the order of adding
+     * parameters to {@link SignatureParameters.Builder}, the template adds parameters to <em>Signature-Input</em> in the order of calling these
+     * methods and {@link #parameters(SignatureParameters)}. E.g. calling {@code parameters(...)} and then {@code createdNow()} puts <em>created</em>
+     * after static parameters.
+     */
+    public static class Builder {
+        private SignatureParameters parameters;
+        private SignatureComponents components;
+        private SignatureComponents usedIfPresentComponents;
+        private PrivateKey privateKey;
+        private String stringPrivateKey;
+        private byte[] bytePrivateKey;
+        private String signatureLabel;
+        private final List<ParameterSlot> parameterOrder = new ArrayList<>();
+        private Integer expiresAfter;
+        private boolean retainSignatureBase = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets static Signature Parameters, included in each signature
+         *
+         * @param parameters Signature Parameters used to create signatures
+         * @return This builder
+         */
+        public Builder parameters(SignatureParameters parameters) {
+            this.parameters = parameters;
+            return addParameterSlot(ParameterSlot.STATIC);
+        }
+
+        /**
+         * Sets required Signature Components
+         * <p>
+         * If related values are not provided in the Signature Context, e.g. missing HTTP header value, an exception will be thrown when computing
+         * the signature.
+         *
+         * @param components Required Signature Components
+         * @return This builder
+         */
+        public Builder components(SignatureComponents components) {
+            this.components = components;
+            return this;
+        }
+
+        /**
+         * Sets Signature Components included in the signature only if related values are present in the Signature Context.
+         * <p>
+         * <em>usedIfPresentComponents</em> are added to <em>Signature-Input</em> after <em>required components</em>
+         *
+         * @param components Signature Components used if present in the Signature Context
+         * @return This builder
+         */
+        public Builder usedIfPresentComponents(SignatureComponents components) {
+            this.usedIfPresentComponents = components;
+            return this;
+        }
+
+        /**
+         * Sets private key used to create signatures
+         *
+         * @param privateKey PrivateKey object
+         * @return This builder
+         */
+        public Builder privateKey(PrivateKey privateKey) {
+            this.privateKey = privateKey;
+            this.bytePrivateKey = null;
+            this.stringPrivateKey = null;
+            return this;
+        }
+
+        /**
+         * Sets private key, encoded as bytes[] in PKCS#8 format
+         *
+         * @param privateKey PKCS#8-encoded private key
+         * @return This builder
+         */
+        public Builder privateKey(byte[] privateKey) {
+            this.bytePrivateKey = privateKey;
+            this.privateKey = null;
+            this.stringPrivateKey = null;
+            return this;
+        }
+
+        /**
+         * Sets private key, provided as PKCS#8-base-64-encoded String
+         * <p>
+         * It can contain multiple lines, including <em>BEGIN PRIVATE KEY</em> and <em>END PRIVATE KEY</em>.
+         *
+         * @param privateKey PKCS#8-base-64-encoded private key
+         * @return This builder
+         */
+        public Builder privateKey(String privateKey) {
+            this.stringPrivateKey = privateKey;
+            this.privateKey = null;
+            this.bytePrivateKey = null;
+            return this;
+        }
+
+        /**
+         * Sets signature label
+         *
+         * @param signatureLabel Signature label
+         * @return This builder
+         * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-signature-labels">Signature Labels</a>
+         */
+        public Builder signatureLabel(String signatureLabel) {
+            this.signatureLabel = signatureLabel;
+            return this;
+        }
+
+        /**
+         * Sets <em>created</em> parameter of each signature to the time of signing
+         *
+         * @return This builder
+         */
+        public Builder createdNow() {
+            return addParameterSlot(ParameterSlot.CREATED);
+        }
+
+        /**
+         * Sets <em>expires</em> parameter of each signature to the time of signing plus given seconds
+         *
+         * @param seconds Seconds to expire after signature creation
+         * @return This builder
+         */
+        public Builder expiresAfter(int seconds) {
+            this.expiresAfter = seconds;
+            return addParameterSlot(ParameterSlot.EXPIRES);
+        }
+
+        /**
+         * Sets <em>nonce</em> parameter of each signature to a random value
+         * <p>
+         * Internally, random UUIDs with removed "-" characters are used
+         *
+         * @return This builder
+         */
+        public Builder randomNonce() {
+            return addParameterSlot(ParameterSlot.NONCE);
+        }
+
+        /**
+         * Sets whether the signature base is retained in produced {@link SignatureResult}. Defaults to true.
+         * <p>
+         * When set to false, {@link SignatureResult#getSignatureBase()} returns null. Useful for applications which don't log or debug signature bases.
+         * Even when retained, the signature base is kept as bytes and converted to String only when requested.
+         *
+         * @param retainSignatureBase True to retain the signature base, false to drop it after signing
+         * @return This builder
+         */
+        public Builder retainSignatureBase(boolean retainSignatureBase) {
+            this.retainSignatureBase = retainSignatureBase;
+            return this;
+        }
+
+        /**
+         * Constructs {@link SignatureTemplate} object from this builder
+         *
+         * @return SignatureTemplate object
+         * @throws IllegalArgumentException Invalid private key or signature label, or a dynamic parameter also given in static parameters
+         */
+        public SignatureTemplate build() {
+            Objects.requireNonNull(parameters, "Parameters not provided");
+            Objects.requireNonNull(parameters.getAlgorithm(), "Algorithm not provided");
+            Objects.requireNonNull(signatureLabel, "SignatureLabel not provided");
+
+            checkDynamicParameter(ParameterSlot.CREATED, SignatureParameterType.CREATED);
+            checkDynamicParameter(ParameterSlot.EXPIRES, SignatureParameterType.EXPIRES);
+            checkDynamicParameter(ParameterSlot.NONCE, SignatureParameterType.NONCE);
+
+            var compiledComponents = compileComponents(components);
+            var compiledUsedIfPresentComponents = compileComponents(usedIfPresentComponents);
+
+            return new SignatureTemplate(compiledComponents, compiledUsedIfPresentComponents, getStaticParameters(),
+                    parameterOrder.toArray(new ParameterSlot[0]), expiresAfter, parameters.getAlgorithm(), getPrivateKey(), signatureLabel,
+                    retainSignatureBase);
+        }
+
+        private Builder addParameterSlot(ParameterSlot slot) {
+            parameterOrder.remove(slot);
+            parameterOrder.add(slot);
+            return this;
+        }
+
+        private void checkDynamicParameter(ParameterSlot slot, SignatureParameterType parameterType) {
+            if (parameterOrder.contains(slot) && parameters.getParameters().containsKey(parameterType)) {
+                throw new IllegalArgumentException("Parameter " + parameterType.getIdentifier() + " provided both as static and dynamic one");
+            }
+        }
+
+        private String getStaticParameters() {
+            var parameterMap = new LinkedHashMap<String, StructuredItem>();
+
+            for (var entry : parameters.getParameters().entrySet()) {
+                var parameter = entry.getKey();
+
+                if (parameter != SignatureParameterType.ALGORITHM || parameters.isAlgorithmVisible()) {
+                    parameterMap.put(parameter.getIdentifier(), SignatureSigner.parameterToStructuredItem(parameter, entry.getValue()));
+                }
+            }
+
+            // serialized parameters of an empty Inner List, without leading "()"
+            return StructuredInnerList.withParams(List.of(), parameterMap).serialize().substring(2);
+        }
+
+        private static List<CompiledComponent> compileComponents(SignatureComponents components) {
+            if (components == null) {
+                return List.of();
+            }
+
+            var compiledComponents = new ArrayList<CompiledComponent>();
+
+            for (var component : components.getComponents()) {
+                compiledComponents.add(new CompiledComponent(component));
+            }
+
+            return List.copyOf(compiledComponents);
+        }
+
+        private PrivateKey getPrivateKey() {
+            try {
+                var keyAlgorithm = parameters.getAlgorithm().getKeyAlgorithm();
+
+                if (privateKey != null) {
+                    return privateKey;
+                } else if (bytePrivateKey != null) {
+                    return SignatureKeyFactory.decodePrivateKey(bytePrivateKey, keyAlgorithm);
+                } else if (stringPrivateKey != null) {
+                    return SignatureKeyFactory.decodePrivateKey(stringPrivateKey, keyAlgorithm);
+                } else {
+                    throw new NullPointerException("Private key not provided");
+                }
+            } catch (SignatureException e) {
+                throw new IllegalArgumentException("Invalid private key", e);
+            }
+        }
+    }
+
+    /**
+     * Position of static parameters or of a dynamic parameter in <em>Signature-Input</em>
+     */
+    private enum ParameterSlot {
+        STATIC,
+        CREATED,
+        EXPIRES,
+        NONCE
+    }
+
+    /**
+     * Component together with its pre-serialized identifier
+     */
+    private static final class CompiledComponent {
+        private final Component component;
+        private final String serializedName;
+        private final String baseLinePrefix;
+
+        private CompiledComponent(Component component) {
+            this.component = component;
+            this.serializedName = component.getName().serialize();
+            this.baseLinePrefix = serializedName + ": ";
+        }
+    }
+
+    /**
+     * String representation of this object. It does not contain private key data.
+     *
+     * @return String representation of this SignatureTemplate
+     */
+    @Override
+    public String toString() {
+        return "SignatureTemplate{" +
+                "components=" + getComponentList(components) +
+                ", usedIfPresentComponents=" + getComponentList(usedIfPresentComponents) +
+                ", staticParameters='" + staticParameters + '\'' +
+                ", parameterOrder=" + Arrays.toString(parameterOrder) +
+                ", expiresAfter=" + expiresAfter +
+                ", algorithm=" + algorithm +
+                ", privateKey=" + privateKey.getClass() +
+                ", signatureLabel='" + signatureLabel + '\'' +
+                ", retainSignatureBase=" + retainSignatureBase +
+                '}';
+    }
+}
@@ -22,14 +22,27 @@
 package net.visma.autopay.http.signature;
 
 import net.visma.autopay.http.signature.SignatureException.ErrorCode;
+import net.visma.autopay.http.structured.StructuredBytes;
 import net.visma.autopay.http.structured.StructuredDictionary;
+import net.visma.autopay.http.structured.StructuredException;
 import net.visma.autopay.http.structured.StructuredInnerList;
+import net.visma.autopay.http.structured.StructuredItem;
 import net.visma.autopay.http.structured.StructuredString;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 
@@ -37,11 +50,18 @@ import java.util.stream.Collectors;
  * A class to verify signatures given as {@link VerificationSpec} object
  */
 final class SignatureVerifier {
+    private static final Stage[] STAGES = Stage.values();
+    private static final Stage[] LABEL_STAGES = Arrays.stream(STAGES).filter(stage -> !stage.messageLevel).toArray(Stage[]::new);
+
     private final VerificationSpec verificationSpec;
+    private final SignatureContext signatureContext;
+    private final String requestedLabel;
+    private final SharedValues sharedValues;
     private StructuredInnerList signatureInput;
     private String signatureLabel;
     private SignatureParameters signatureParameters;
-    private SignatureContext signatureContext;
+    private byte[] givenSignature;
+    private SignatureBase signatureBase;
 
     /**
      * Given a {@link VerificationSpec} object verifies the signature and throws an exception when signature is incorrect or any other problem occurs.
@@ -52,35 +72,265 @@ final class SignatureVerifier {
      * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-verifying-a-signature">Verifying a Signature</a>
      */
     static void verify(VerificationSpec verificationSpec) throws SignatureException {
-        new SignatureVerifier(verificationSpec).verify();
+        var verifier = new SignatureVerifier(verificationSpec, verificationSpec.getSignatureContext());
+        verifier.prepare();
+        verifier.verifySignature(getPublicKeyInfo(verificationSpec, verifier.getKeyId()));
+    }
+
+    /**
+     * Given a {@link VerificationSpec} object verifies the signature without blocking on fetching the public key
+     *
+     * @param verificationSpec Verification specification: parameters, components, context of HTTP request or response, public key supplier, signature label
+     * @return Future completed normally when signature is correct, or exceptionally with {@link SignatureException}
+     * @see VerificationSpec#verifyAsync()
+     */
+    static CompletableFuture<Void> verifyAsync(VerificationSpec verificationSpec) {
+        var verifier = new SignatureVerifier(verificationSpec, verificationSpec.getSignatureContext());
+        CompletableFuture<PublicKeyInfo> keyFuture;
+
+        try {
+            verifier.prepare();
+            keyFuture = getPublicKeyInfoAsync(verificationSpec, verifier.getKeyId());
+        } catch (SignatureException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        var timeout = verificationSpec.getPublicKeyTimeout();
+        var timedKeyFuture = timeout != null ? keyFuture.copy().orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS) : keyFuture;
+        var resultFuture = new CompletableFuture<Void>();
+
+        timedKeyFuture.whenComplete((publicKeyInfo, throwable) -> {
+            try {
+                if (throwable != null) {
+                    throw getPublicKeyException(throwable, keyFuture);
+                }
+
+                verifier.verifySignature(publicKeyInfo);
+                resultFuture.complete(null);
+            } catch (Exception e) {
+                resultFuture.completeExceptionally(e);
+            }
+        });
+
+        resultFuture.whenComplete((result, throwable) -> {
+            if (resultFuture.isCancelled()) {
+                keyFuture.cancel(true);
+            }
+        });
+
+        return resultFuture;
+    }
+
+    /**
+     * Verifies multiple signatures of the same message, given by their labels, according to the same {@link VerificationSpec}.
+     * <p>
+     * <em>Signature-Input</em> and <em>Signature</em> headers are checked for limits and parsed once, and value of each component is extracted
+     * once, even if the component is covered by many signatures. The public key getter is called once per <em>keyid</em>. Preparation of each
+     * signature, fetching the keys and verification of each signature are run as tasks by given executor. Unchecked exceptions
+     * thrown for a single signature are reported as its result, with {@link ErrorCode#UNEXPECTED_EXCEPTION}.
+     *
+     * @param verificationSpec Verification specification. Its signature label is replaced by each of the given labels.
+     * @param signatureLabels  Labels of verified signatures
+     * @param executor         Executor running verification tasks
+     * @return Verification results, in the same order as given labels
+     */
+    static List<VerificationResult> verifyAll(VerificationSpec verificationSpec, Collection<String> signatureLabels, Executor executor) {
+        var signatureContext = verificationSpec.getSignatureContext();
+        var labels = List.copyOf(signatureLabels);
+        var size = labels.size();
+        var exceptions = new SignatureException[size];
+        SharedValues sharedValues;
+
+        try {
+            sharedValues = SharedValues.create(verificationSpec);
+        } catch (SignatureException e) {
+            Arrays.fill(exceptions, e);
+            sharedValues = null;
+        }
+
+        if (sharedValues != null) {
+            var verifiers = new SignatureVerifier[size];
+            var values = sharedValues;
+
+            runAll(size, executor, index -> {
+                var verifier = new SignatureVerifier(verificationSpec, labels.get(index), values);
+                verifier.prepare();
+                verifiers[index] = verifier;
+            }, exceptions);
+
+            var keyFutures = new HashMap<String, CompletableFuture<KeyResult>>();
+
+            for (var verifier : verifiers) {
+                if (verifier != null) {
+                    keyFutures.computeIfAbsent(verifier.getKeyId(),
+                            keyId -> CompletableFuture.supplyAsync(() -> fetchPublicKeyInfo(verificationSpec, keyId), executor));
+                }
+            }
+
+            BatchVerifier.await(keyFutures.values());
+
+            runAll(size, executor, index -> {
+                if (verifiers[index] != null) {
+                    var keyResult = keyFutures.get(verifiers[index].getKeyId()).join();
+                    verifiers[index].verifySignature(keyResult.getPublicKeyInfo());
+                }
+            }, exceptions);
+        }
+
+        var results = new ArrayList<VerificationResult>(size);
+
+        for (int index = 0; index < size; index++) {
+            results.add(new VerificationResult(signatureContext, labels.get(index), exceptions[index]));
+        }
+
+        return results;
+    }
+
+    private static KeyResult fetchPublicKeyInfo(VerificationSpec verificationSpec, String keyId) {
+        try {
+            return new KeyResult(getPublicKeyInfo(verificationSpec, keyId), null);
+        } catch (SignatureException e) {
+            return new KeyResult(null, e);
+        }
+    }
+
+    private static void runAll(int count, Executor executor, IndexedTask task, SignatureException[] exceptions) {
+        var futures = new ArrayList<CompletableFuture<Void>>(count);
+
+        for (int index = 0; index < count; index++) {
+            var taskIndex = index;
+
+            if (exceptions[taskIndex] == null) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        task.run(taskIndex);
+                    } catch (SignatureException e) {
+                        exceptions[taskIndex] = e;
+                    } catch (RuntimeException e) {
+                        exceptions[taskIndex] = BatchVerifier.getUnexpectedException(e);
+                    }
+                }, executor));
+            }
+        }
+
+        BatchVerifier.await(futures);
+    }
+
+    private static CompletableFuture<PublicKeyInfo> getPublicKeyInfoAsync(VerificationSpec verificationSpec, String keyId) throws SignatureException {
+        var asyncPublicKeyGetter = verificationSpec.getAsyncPublicKeyGetter();
+
+        if (asyncPublicKeyGetter == null) {
+            return CompletableFuture.completedFuture(getPublicKeyInfo(verificationSpec, keyId));
+        }
+
+        try {
+            return asyncPublicKeyGetter.apply(keyId).toCompletableFuture();
+        } catch (Exception e) {
+            throw new SignatureException(ErrorCode.INVALID_KEY, "Exception when fetching public key", e);
+        }
+    }
+
+    private static SignatureException getPublicKeyException(Throwable throwable, CompletableFuture<PublicKeyInfo> keyFuture) {
+        var cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+
+        if (cause instanceof SignatureException) {
+            return (SignatureException) cause;
+        } else if (cause instanceof TimeoutException) {
+            keyFuture.cancel(true);
+            return new SignatureException(ErrorCode.INVALID_KEY, "Timeout when fetching public key", cause);
+        } else {
+            return new SignatureException(ErrorCode.INVALID_KEY, "Exception when fetching public key", cause);
+        }
+    }
+
+    /**
+     * Creates a verifier of a single message. The verification policy is taken from given Verification Spec, and values of the message from given
+     * Signature Context.
+     *
+     * @param verificationSpec Verification specification providing the policy and the public key getter
+     * @param signatureContext Signature Context of verified message
+     */
+    SignatureVerifier(VerificationSpec verificationSpec, SignatureContext signatureContext) {
+        this.verificationSpec = verificationSpec;
+        this.signatureContext = signatureContext;
+        this.requestedLabel = verificationSpec.getSignatureLabel();
+        this.sharedValues = null;
     }
 
-    private SignatureVerifier(VerificationSpec verificationSpec) {
+    private SignatureVerifier(VerificationSpec verificationSpec, String requestedLabel, SharedValues sharedValues) {
         this.verificationSpec = verificationSpec;
+        this.signatureContext = verificationSpec.getSignatureContext();
+        this.requestedLabel = requestedLabel;
+        this.sharedValues = sharedValues;
+    }
+
+    /**
+     * Performs all verification steps which don't need the public key: finds and parses the signature, checks the policy and computes the signature
+     * base. Must be called before {@link #getKeyId()} and {@link #verifySignature(PublicKeyInfo)}.
+     * <p>
+     * Steps are performed as {@link Stage stages}, cheap checks first, so that messages violating the policy are rejected before expensive work.
+     * When verifying one of multiple signatures, stages checking whole headers are skipped, as they were done once for all signatures.
+     *
+     * @throws SignatureException Signature not compliant with the policy, missing or malformatted values in the Signature Context
+     */
+    void prepare() throws SignatureException {
+        for (var stage : sharedValues != null ? LABEL_STAGES : STAGES) {
+            stage.action.perform(this);
+        }
+    }
+
+    /**
+     * Returns <em>keyid</em> parameter of verified signature
+     *
+     * @return Key ID or null if not present in the signature
+     */
+    String getKeyId() {
+        return signatureParameters.getKeyId();
     }
 
-    private void verify() throws SignatureException {
-        signatureContext = verificationSpec.getSignatureContext();
-        populateSignatureInput();
-        populateSignatureParameters();
-        verifyUniqueness();
-        verifyRequired();
-        verifyForbidden();
-        verifyExpiration();
-        var givenSignature = getSignature();
-        var signatureComponents = getComponents();
-        var signatureBase = SignatureSigner.getSignatureBase(signatureComponents, signatureContext, signatureInput);
+    /**
+     * Fetches public key info for given key ID by using public key getter of given Verification Spec
+     *
+     * @param verificationSpec Verification Spec providing the public key getter
+     * @param keyId            Key ID, can be null
+     * @return Public key info
+     * @throws SignatureException Exception thrown by the getter, wrapped with {@link ErrorCode#INVALID_KEY} unless it's a SignatureException
+     */
+    static PublicKeyInfo getPublicKeyInfo(VerificationSpec verificationSpec, String keyId) throws SignatureException {
+        try {
+            return verificationSpec.getPublicKeyGetter().apply(keyId);
+        } catch (SignatureException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SignatureException(ErrorCode.INVALID_KEY, "Exception when fetching public key", e);
+        }
+    }
 
-        var publicKeyInfo = getPublicKeyInfo();
+    /**
+     * Verifies the signature, computed by {@link #prepare()}, by using given public key
+     *
+     * @param publicKeyInfo Public key info obtained for {@link #getKeyId()}
+     * @throws SignatureException Incorrect signature or problems with the public key
+     */
+    void verifySignature(PublicKeyInfo publicKeyInfo) throws SignatureException {
         var algorithm = getAlgorithm(publicKeyInfo);
         var publicKey = publicKeyInfo.getPublicKey(algorithm.getKeyAlgorithm());
 
         if (!DataVerifier.verify(signatureBase, givenSignature, publicKey, algorithm)) {
-            throw new SignatureException(ErrorCode.INCORRECT_SIGNATURE, "Provided signature different from computed one.\nUsed algorithm: "
-                    + algorithm.getIdentifier() + "\nSignature base:\n" + signatureBase);
+            throw getIncorrectSignatureException(algorithm, signatureBase);
         }
     }
 
+    private SignatureException getIncorrectSignatureException(SignatureAlgorithm algorithm, SignatureBase signatureBase) {
+        var message = "Provided signature different from computed one.\nUsed algorithm: " + algorithm.getIdentifier();
+
+        if (verificationSpec.isSignatureBaseInException()) {
+            message += "\nSignature base:\n" + signatureBase;
+        }
+
+        return new SignatureException(ErrorCode.INCORRECT_SIGNATURE, message);
+    }
+
     private SignatureAlgorithm getAlgorithm(PublicKeyInfo publicKeyInfo) throws SignatureException {
         var algorithmInParameters = signatureParameters.getAlgorithm();
         var publicKeyAlgorithm = publicKeyInfo.getAlgorithm();
@@ -94,19 +344,62 @@ final class SignatureVerifier {
         return algorithm;
     }
 
-    private PublicKeyInfo getPublicKeyInfo() throws SignatureException {
+    private void verifyHeaderLength() throws SignatureException {
+        var maximumHeaderLength = verificationSpec.getMaximumHeaderLength();
+
+        if (maximumHeaderLength != null) {
+            for (var headerName : List.of(SignatureHeaders.SIGNATURE_INPUT, SignatureHeaders.SIGNATURE)) {
+                var header = signatureContext.getHeaders().get(headerName.toLowerCase());
+
+                if (header != null && getLength(header) > maximumHeaderLength) {
+                    throw new SignatureException(ErrorCode.LIMIT_EXCEEDED, headerName + " header longer than " + maximumHeaderLength + " characters");
+                }
+            }
+        }
+    }
+
+    private static long getLength(List<String> headerValues) {
+        var length = 0L;
+
+        for (var headerValue : headerValues) {
+            length += headerValue.length();
+        }
+
+        return length;
+    }
+
+    private void verifySignatureCount() throws SignatureException {
+        var maximumSignatures = verificationSpec.getMaximumSignatures();
+        var header = signatureContext.getHeaders().get(SignatureHeaders.SIGNATURE_INPUT.toLowerCase());
+
+        if (maximumSignatures == null || header == null) {
+            return;
+        }
+
+        int signatureCount;
+
         try {
-            return verificationSpec.getPublicKeyGetter().apply(signatureParameters.getKeyId());
-        } catch (SignatureException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new SignatureException(ErrorCode.INVALID_KEY, "Exception when fetching public key", e);
+            signatureCount = StructuredDictionary.countMembers(header, verificationSpec.getParserLimits());
+        } catch (StructuredException e) {
+            throw getParsingException(SignatureHeaders.SIGNATURE_INPUT, e);
+        }
+
+        if (signatureCount > maximumSignatures) {
+            throw new SignatureException(ErrorCode.LIMIT_EXCEEDED, "More than " + maximumSignatures + " signatures in Signature-Input header");
+        }
+    }
+
+    private void verifyKeyId() throws SignatureException {
+        var keyIdFilter = verificationSpec.getKeyIdFilter();
+        var keyId = signatureParameters.getKeyId();
+
+        if (keyIdFilter != null && !keyIdFilter.test(keyId)) {
+            throw new SignatureException(ErrorCode.INVALID_KEY, "Key ID not allowed: " + keyId);
         }
     }
 
     private void populateSignatureInput() throws SignatureException {
         var header = signatureContext.getHeaders().get(SignatureHeaders.SIGNATURE_INPUT.toLowerCase());
-        var requestedLabel = verificationSpec.getSignatureLabel();
         var requestedTag = verificationSpec.getApplicationTag();
 
         if (header == null) {
@@ -114,26 +407,26 @@ final class SignatureVerifier {
         }
 
         try {
-            var inputDictionary = StructuredDictionary.parse(header);
-
             if (requestedLabel != null) {
-                signatureInput = getSignatureInputByLabelAndTag(inputDictionary, requestedLabel, requestedTag);
+                signatureInput = getSignatureInputByLabelAndTag(header, requestedLabel, requestedTag);
                 signatureLabel = requestedLabel;
             } else {
-                var inputEntry = getSignatureInputByTag(inputDictionary, requestedTag);
+                var inputEntry = getSignatureInputByTag(StructuredDictionary.parse(header, verificationSpec.getParserLimits()), requestedTag);
                 signatureInput = inputEntry.getValue();
                 signatureLabel = inputEntry.getKey();
             }
         } catch (SignatureException e) {
             throw e;
         } catch (Exception e) {
-            throw new SignatureException(ErrorCode.INVALID_STRUCTURED_HEADER, "Unable to parse Signature-Input header", e);
+            throw getParsingException(SignatureHeaders.SIGNATURE_INPUT, e);
         }
     }
 
-    private StructuredInnerList getSignatureInputByLabelAndTag(StructuredDictionary inputDictionary, String requestedLabel, String requestedTag)
-            throws SignatureException {
-        var optionalSignatureInput = inputDictionary.getItem(requestedLabel, StructuredInnerList.class);
+    private StructuredInnerList getSignatureInputByLabelAndTag(List<String> header, String requestedLabel, String requestedTag)
+            throws SignatureException, StructuredException {
+        var optionalSignatureInput = sharedValues != null
+                ? castMember(sharedValues.signatureInputs.getItem(requestedLabel), StructuredInnerList.class, SignatureHeaders.SIGNATURE_INPUT)
+                : StructuredDictionary.findMember(header, requestedLabel, StructuredInnerList.class, verificationSpec.getParserLimits());
 
         if (requestedTag != null && optionalSignatureInput.isPresent() && !isTagPresent(requestedTag, optionalSignatureInput.get())) {
             throw new SignatureException(ErrorCode.MISSING_TAG, "Missing " + requestedTag + " tag in Signature-Input");
@@ -144,6 +437,24 @@ final class SignatureVerifier {
         }
     }
 
+    private static SignatureException getParsingException(String headerName, Exception e) {
+        if (e instanceof StructuredException && ((StructuredException) e).getErrorCode() == StructuredException.ErrorCode.LIMIT_EXCEEDED) {
+            return new SignatureException(ErrorCode.LIMIT_EXCEEDED, "Parser limits exceeded in " + headerName + " header", e);
+        } else {
+            return new SignatureException(ErrorCode.INVALID_STRUCTURED_HEADER, "Unable to parse " + headerName + " header", e);
+        }
+    }
+
+    private static <T extends StructuredItem> Optional<T> castMember(Optional<StructuredItem> member, Class<T> itemClass, String headerName)
+            throws SignatureException {
+        if (member.isEmpty() || itemClass.isInstance(member.get())) {
+            return member.map(itemClass::cast);
+        } else {
+            throw new SignatureException(ErrorCode.INVALID_STRUCTURED_HEADER, "Unable to parse " + headerName + " header. "
+                    + itemClass.getSimpleName() + " requested but " + member.get().getClass().getSimpleName() + " is present");
+        }
+    }
+
     private Map.Entry<String, StructuredInnerList> getSignatureInputByTag(StructuredDictionary inputDictionary, String requestedTag) throws SignatureException {
         var inputEntries = inputDictionary.entrySet(StructuredInnerList.class).stream()
                 .filter(entry -> isTagPresent(requestedTag, entry.getValue()))
@@ -165,22 +476,33 @@ final class SignatureVerifier {
                 .isPresent();
     }
 
+    private void populateSignature() throws SignatureException {
+        givenSignature = getSignature();
+    }
+
+    private void populateSignatureBase() throws SignatureException {
+        signatureBase = SignatureSigner.getSignatureBase(getComponents(), signatureContext, signatureInput);
+    }
+
     private byte[] getSignature() throws SignatureException {
         var header = signatureContext.getHeaders().get(SignatureHeaders.SIGNATURE.toLowerCase());
-        StructuredDictionary dictionary;
+        Optional<byte[]> signature;
 
         if (header == null) {
             throw new SignatureException(ErrorCode.MISSING_HEADER, "Missing Signature header");
         }
 
         try {
-            dictionary = StructuredDictionary.parse(header);
+            var member = sharedValues != null
+                    ? castMember(sharedValues.signatures.getItem(signatureLabel), StructuredBytes.class, SignatureHeaders.SIGNATURE)
+                    : StructuredDictionary.findMember(header, signatureLabel, StructuredBytes.class, verificationSpec.getParserLimits());
+            signature = member.map(StructuredBytes::bytesValue);
+        } catch (SignatureException e) {
+            throw e;
         } catch (Exception e) {
-            throw new SignatureException(ErrorCode.INVALID_STRUCTURED_HEADER, "Unable to parse Signature header", e);
+            throw getParsingException(SignatureHeaders.SIGNATURE, e);
         }
 
-        var signature = dictionary.getBytes(signatureLabel);
-
         if (signature.isEmpty()) {
             throw new SignatureException(ErrorCode.MISSING_DICTIONARY_KEY, "Missing " + signatureLabel + " in Signature");
         }
@@ -219,7 +541,7 @@ final class SignatureVerifier {
         }
 
         for (var requiredComponent : verificationSpec.getRequiredIfPresentComponents().getComponents()) {
-            if (!actualComponents.contains(requiredComponent.getName()) && requiredComponent.isValuePresent(signatureContext)) {
+            if (!actualComponents.contains(requiredComponent.getName()) && signatureContext.getComponentValues().isPresent(requiredComponent)) {
                 throw new SignatureException(ErrorCode.MISSING_REQUIRED, "Missing required optionally present component " + requiredComponent);
             }
         }
@@ -273,4 +595,110 @@ final class SignatureVerifier {
         }
     }
 
+    /**
+     * Verification stages performed before the public key is needed, in execution order.
+     * <p>
+     * Cheap checks which can reject a message, e.g. header length, number of signatures, <em>keyid</em> or <em>created</em> timestamp, are done
+     * before parsing the components and computing the signature base. A stage can use values populated by previous stages, which is why some cheap
+     * checks follow more costly ones.
+     */
+    private enum Stage {
+        HEADER_LENGTH(true, SignatureVerifier::verifyHeaderLength),
+        SIGNATURE_COUNT(true, SignatureVerifier::verifySignatureCount),
+        SIGNATURE_INPUT(false, SignatureVerifier::populateSignatureInput),
+        SIGNATURE_PARAMETERS(false, SignatureVerifier::populateSignatureParameters),
+        KEY_ID(false, SignatureVerifier::verifyKeyId),
+        EXPIRATION(false, SignatureVerifier::verifyExpiration),
+        FORBIDDEN(false, SignatureVerifier::verifyForbidden),
+        UNIQUENESS(false, SignatureVerifier::verifyUniqueness),
+        REQUIRED(false, SignatureVerifier::verifyRequired),
+        SIGNATURE(false, SignatureVerifier::populateSignature),
+        SIGNATURE_BASE(false, SignatureVerifier::populateSignatureBase);
+
+        private final boolean messageLevel;
+        private final StageAction action;
+
+        /**
+         * @param messageLevel True if the stage checks whole headers rather than a single signature, so it's done once per message
+         * @param action       Action performed by the stage
+         */
+        Stage(boolean messageLevel, StageAction action) {
+            this.messageLevel = messageLevel;
+            this.action = action;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageAction {
+        void perform(SignatureVerifier verifier) throws SignatureException;
+    }
+
+    @FunctionalInterface
+    private interface IndexedTask {
+        void run(int index) throws SignatureException;
+    }
+
+    /**
+     * Values shared by verifiers of multiple signatures of the same message: parsed signature headers. Component values are shared by
+     * the Signature Context.
+     */
+    private static final class SharedValues {
+        private final StructuredDictionary signatureInputs;
+        private final StructuredDictionary signatures;
+
+        private SharedValues(StructuredDictionary signatureInputs, StructuredDictionary signatures) {
+            this.signatureInputs = signatureInputs;
+            this.signatures = signatures;
+        }
+
+        /**
+         * Performs message-level stages and parses <em>Signature-Input</em> and <em>Signature</em> headers
+         */
+        private static SharedValues create(VerificationSpec verificationSpec) throws SignatureException {
+            var verifier = new SignatureVerifier(verificationSpec, verificationSpec.getSignatureContext());
+
+            for (var stage : STAGES) {
+                if (stage.messageLevel) {
+                    stage.action.perform(verifier);
+                }
+            }
+
+            var signatureInputs = parseHeader(verificationSpec, SignatureHeaders.SIGNATURE_INPUT);
+            var signatures = parseHeader(verificationSpec, SignatureHeaders.SIGNATURE);
+
+            return new SharedValues(signatureInputs, signatures);
+        }
+
+        private static StructuredDictionary parseHeader(VerificationSpec verificationSpec, String headerName) throws SignatureException {
+            var header = verificationSpec.getSignatureContext().getHeaders().get(headerName.toLowerCase());
+
+            if (header == null) {
+                throw new SignatureException(ErrorCode.MISSING_HEADER, "Missing " + headerName + " header");
+            }
+
+            try {
+                return StructuredDictionary.parse(header, verificationSpec.getParserLimits());
+            } catch (StructuredException e) {
+                throw getParsingException(headerName, e);
+            }
+        }
+    }
+
+    private static final class KeyResult {
+        private final PublicKeyInfo publicKeyInfo;
+        private final SignatureException exception;
+
+        private KeyResult(PublicKeyInfo publicKeyInfo, SignatureException exception) {
+            this.publicKeyInfo = publicKeyInfo;
+            this.exception = exception;
+        }
+
+        private PublicKeyInfo getPublicKeyInfo() throws SignatureException {
+            if (exception != null) {
+                throw exception;
+            }
+
+            return publicKeyInfo;
+        }
+    }
 }
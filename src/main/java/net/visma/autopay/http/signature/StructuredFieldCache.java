@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import net.visma.autopay.http.structured.ParserLimits;
+import net.visma.autopay.http.structured.StructuredDictionary;
+import net.visma.autopay.http.structured.StructuredException;
+import net.visma.autopay.http.structured.StructuredField;
+import net.visma.autopay.http.structured.StructuredItem;
+import net.visma.autopay.http.structured.StructuredList;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of re-serialized Structured Field values, used for header components with <em>sf</em> parameter.
+ * <p>
+ * Structured header values are often repeated between messages, e.g. the same <em>Priority</em> or <em>Cache-Control</em> value is sent
+ * by a client in every request. Re-serialized values are cached by header name and header value, so such values are parsed once.
+ * <p>
+ * Types of Structured Fields registered by their specifications are known up front, so values of these fields are parsed directly as a
+ * Dictionary, List or Item, without guessing the type. A value not matching the registered type of its field is rejected, even if it could
+ * be parsed as another type. Values of other fields are parsed by {@link StructuredField#parse(String, ParserLimits)}.
+ * Values are parsed within {@link ParserLimits#DEFAULT} limits, since they may come from untrusted messages.
+ * <p>
+ * Number of cached values is limited by {@value #MAXIMUM_SIZE_PROPERTY} system property, 256 by default. Size of 0 disables the cache.
+ * When the cache is full, arbitrary values are evicted, not the least recently used ones. Values longer than {@value #MAXIMUM_VALUE_LENGTH}
+ * characters are re-serialized without caching, so the cache can't be filled with large values. Hit and miss counts are kept for tests.
+ */
+final class StructuredFieldCache {
+    /**
+     * System property used to set the maximum number of cached values
+     */
+    static final String MAXIMUM_SIZE_PROPERTY = "net.visma.autopay.http.signature.structuredFieldCacheSize";
+
+    /**
+     * Maximum length of cached header values
+     */
+    static final int MAXIMUM_VALUE_LENGTH = 1024;
+
+    private static final Map<String, FieldParser> KNOWN_FIELD_TYPES = Map.ofEntries(
+            Map.entry("accept-ch", StructuredList::parse),
+            Map.entry("accept-signature", StructuredDictionary::parse),
+            Map.entry("cache-status", StructuredList::parse),
+            Map.entry("cdn-cache-control", StructuredDictionary::parse),
+            Map.entry("client-cert", StructuredItem::parse),
+            Map.entry("client-cert-chain", StructuredList::parse),
+            Map.entry("content-digest", StructuredDictionary::parse),
+            Map.entry("cross-origin-embedder-policy", StructuredItem::parse),
+            Map.entry("cross-origin-opener-policy", StructuredItem::parse),
+            Map.entry("origin-agent-cluster", StructuredItem::parse),
+            Map.entry("priority", StructuredDictionary::parse),
+            Map.entry("proxy-status", StructuredList::parse),
+            Map.entry("repr-digest", StructuredDictionary::parse),
+            Map.entry("signature", StructuredDictionary::parse),
+            Map.entry("signature-input", StructuredDictionary::parse),
+            Map.entry("want-content-digest", StructuredDictionary::parse),
+            Map.entry("want-repr-digest", StructuredDictionary::parse));
+
+    private static final ConcurrentMap<FieldKey, String> VALUES = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static volatile int maximumSize = Integer.getInteger(MAXIMUM_SIZE_PROPERTY, 256);
+
+    /**
+     * Returns the number of values found in the cache
+     *
+     * @return Number of cache hits
+     */
+    static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * Returns the number of values which were not found in the cache and were parsed
+     *
+     * @return Number of cache misses
+     */
+    static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Returns current number of cached values
+     *
+     * @return Number of cached values
+     */
+    static int size() {
+        return VALUES.size();
+    }
+
+    /**
+     * Removes all cached values. Hit and miss counts are not reset.
+     */
+    static void clear() {
+        VALUES.clear();
+    }
+
+    /**
+     * Returns given Structured Field value re-serialized to its standard form
+     *
+     * @param headerName  Lower-case header name
+     * @param headerValue Header value
+     * @return Re-serialized header value
+     * @throws StructuredException Thrown in case of malformatted header value
+     */
+    static String reSerialize(String headerName, String headerValue) throws StructuredException {
+        if (maximumSize <= 0 || headerValue.length() > MAXIMUM_VALUE_LENGTH) {
+            return parse(headerName, headerValue).serialize();
+        }
+
+        var key = new FieldKey(headerName, headerValue);
+        var value = VALUES.get(key);
+
+        if (value != null) {
+            HITS.increment();
+            return value;
+        }
+
+        MISSES.increment();
+        value = parse(headerName, headerValue).serialize();
+
+        if (VALUES.size() >= maximumSize) {
+            // Evicts whatever comes first in iteration order, which is cheap and good enough for repeated values
+            var iterator = VALUES.keySet().iterator();
+
+            while (VALUES.size() >= maximumSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        VALUES.put(key, value);
+        return value;
+    }
+
+    /**
+     * Sets the maximum number of cached values and clears the cache. Size of 0 disables the cache.
+     *
+     * @param size Maximum number of cached values
+     */
+    static void setMaximumSize(int size) {
+        maximumSize = size;
+        VALUES.clear();
+    }
+
+    private static StructuredField parse(String headerName, String headerValue) throws StructuredException {
+        var fieldParser = KNOWN_FIELD_TYPES.get(headerName);
+
+        return fieldParser != null ? fieldParser.parse(headerValue, ParserLimits.DEFAULT) : StructuredField.parse(headerValue, ParserLimits.DEFAULT);
+    }
+
+    private StructuredFieldCache() {
+        throw new UnsupportedOperationException();
+    }
+
+    @FunctionalInterface
+    private interface FieldParser {
+        StructuredField parse(String headerValue, ParserLimits limits) throws StructuredException;
+    }
+
+    private static final class FieldKey {
+        private final String headerName;
+        private final String headerValue;
+        private final int hash;
+
+        private FieldKey(String headerName, String headerValue) {
+            this.headerName = headerName;
+            this.headerValue = headerValue;
+            this.hash = Objects.hash(headerName, headerValue);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            var that = (FieldKey) o;
+            return headerName.equals(that.headerName) && headerValue.equals(that.headerValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+/**
+ * A result of verification of a single message, produced by {@link BatchVerifier}, or of a single signature, produced by
+ * {@link VerificationSpec#verifyAll(java.util.Collection)}
+ *
+ * @see BatchVerifier#verify(java.util.Collection)
+ */
+public final class VerificationResult {
+    private final SignatureContext signatureContext;
+    private final String signatureLabel;
+    private final SignatureException exception;
+
+    /**
+     * Creates Verification Result object
+     *
+     * @param signatureContext Signature Context of verified message
+     * @param exception        Exception which caused verification failure, or null when the signature is correct
+     */
+    VerificationResult(SignatureContext signatureContext, SignatureException exception) {
+        this(signatureContext, null, exception);
+    }
+
+    /**
+     * Creates Verification Result object for one of multiple signatures of a message
+     *
+     * @param signatureContext Signature Context of verified message
+     * @param signatureLabel   Label of verified signature
+     * @param exception        Exception which caused verification failure, or null when the signature is correct
+     */
+    VerificationResult(SignatureContext signatureContext, String signatureLabel, SignatureException exception) {
+        this.signatureContext = signatureContext;
+        this.signatureLabel = signatureLabel;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns Signature Context of verified message
+     *
+     * @return Signature Context
+     */
+    public SignatureContext getSignatureContext() {
+        return signatureContext;
+    }
+
+    /**
+     * Returns label of verified signature, when verified by {@link VerificationSpec#verifyAll(java.util.Collection)}
+     *
+     * @return Signature label, or null for results produced by {@link BatchVerifier}
+     */
+    public String getSignatureLabel() {
+        return signatureLabel;
+    }
+
+    /**
+     * Returns whether the signature was verified successfully
+     *
+     * @return True when the signature is correct and compliant with the verification policy
+     */
+    public boolean isVerified() {
+        return exception == null;
+    }
+
+    /**
+     * Returns the exception which would be thrown by {@link VerificationSpec#verify()} for verified message
+     *
+     * @return Exception which caused verification failure, or null when the signature is correct. For detailed reason call
+     *         {@link SignatureException#getErrorCode()}.
+     */
+    public SignatureException getException() {
+        return exception;
+    }
+
+    /**
+     * String representation of this object
+     *
+     * @return String representation of this VerificationResult
+     */
+    @Override
+    public String toString() {
+        return "VerificationResult[" +
+                "signatureLabel=" + signatureLabel + ", " +
+                "verified=" + isVerified() + ", " +
+                "exception=" + exception + ", " +
+                "signatureContext=" + signatureContext + ']';
+    }
+}
@@ -21,11 +21,22 @@
  */
 package net.visma.autopay.http.signature;
 
+import net.visma.autopay.http.structured.ParserLimits;
+
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Signature verification specification - all data needed to verify a signature.
@@ -54,14 +65,23 @@ public class VerificationSpec {
     private final Integer maximumAgeSeconds;
     private final Integer maximumSkewSeconds;
     private final CheckedFunction<String, PublicKeyInfo> publicKeyGetter;
+    private final Function<String, ? extends CompletionStage<PublicKeyInfo>> asyncPublicKeyGetter;
+    private final Duration publicKeyTimeout;
     private final String signatureLabel;
     private final String applicationTag;
+    private final boolean signatureBaseInException;
+    private final Integer maximumHeaderLength;
+    private final Integer maximumSignatures;
+    private final Predicate<String> keyIdFilter;
+    private final ParserLimits parserLimits;
 
 
     private VerificationSpec(Set<SignatureParameterType> requiredParameters, Set<SignatureParameterType> forbiddenParameters,
                              SignatureComponents requiredComponents, SignatureComponents requiredIfPresentComponents, SignatureContext signatureContext,
                              Integer maximumAgeSeconds, Integer maximumSkewSeconds, CheckedFunction<String, PublicKeyInfo> publicKeyGetter,
-                             String signatureLabel, String applicationTag) {
+                             Function<String, ? extends CompletionStage<PublicKeyInfo>> asyncPublicKeyGetter, Duration publicKeyTimeout,
+                             String signatureLabel, String applicationTag, boolean signatureBaseInException, Integer maximumHeaderLength,
+                             Integer maximumSignatures, Predicate<String> keyIdFilter, ParserLimits parserLimits) {
         this.requiredParameters = requiredParameters;
         this.forbiddenParameters = forbiddenParameters;
         this.requiredComponents = requiredComponents;
@@ -70,8 +90,15 @@ public class VerificationSpec {
         this.maximumAgeSeconds = maximumAgeSeconds;
         this.maximumSkewSeconds = maximumSkewSeconds;
         this.publicKeyGetter = publicKeyGetter;
+        this.asyncPublicKeyGetter = asyncPublicKeyGetter;
+        this.publicKeyTimeout = publicKeyTimeout;
         this.signatureLabel = signatureLabel;
         this.applicationTag = applicationTag;
+        this.signatureBaseInException = signatureBaseInException;
+        this.maximumHeaderLength = maximumHeaderLength;
+        this.maximumSignatures = maximumSignatures;
+        this.keyIdFilter = keyIdFilter;
+        this.parserLimits = parserLimits;
     }
 
     /**
@@ -85,6 +112,55 @@ public class VerificationSpec {
         SignatureVerifier.verify(this);
     }
 
+    /**
+     * Verifies signature according to this Verification Spec without blocking on fetching the public key.
+     * <p>
+     * Signature Input is parsed and Signature Base is computed by the calling thread. Then the public key is requested from
+     * {@link Builder#asyncPublicKeyGetter(Function) asynchronous public key getter}, and the signature is verified by the thread completing
+     * the public key stage. If only synchronous {@link Builder#publicKeyGetter(CheckedFunction) public key getter} is provided, it's called by
+     * the calling thread.
+     * <p>
+     * Cancelling returned future, or exceeding {@link Builder#publicKeyTimeout(Duration) public key timeout}, cancels the future obtained from
+     * the asynchronous getter.
+     *
+     * @return Future completed normally when signature is correct, or exceptionally with {@link SignatureException} when signature is incorrect or any
+     *         other problem occurs. For detailed reason call {@link SignatureException#getErrorCode()}.
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-verifying-a-signature">Verifying a Signature</a>
+     */
+    public CompletableFuture<Void> verifyAsync() {
+        return SignatureVerifier.verifyAsync(this);
+    }
+
+    /**
+     * Verifies multiple signatures of the message, given by their labels, according to this Verification Spec. Signature label of this spec is
+     * replaced by each of the given labels, and all other settings are applied to each signature.
+     * <p>
+     * <em>Signature-Input</em> and <em>Signature</em> headers are parsed once for all signatures, and value of each component is extracted once,
+     * even if it's covered by many signatures. The public key getter is called once per <em>keyid</em>. All work is done by the calling thread.
+     *
+     * @param signatureLabels Labels of verified signatures
+     * @return Verification results, in the same order as given labels
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9421.html#name-multiple-signatures">Multiple Signatures</a>
+     */
+    public List<VerificationResult> verifyAll(Collection<String> signatureLabels) {
+        return SignatureVerifier.verifyAll(this, signatureLabels, Runnable::run);
+    }
+
+    /**
+     * Verifies multiple signatures of the message, given by their labels, in parallel
+     * <p>
+     * Preparation of signatures, fetching of public keys and verification of signatures are run as tasks by given executor. The public key getter
+     * must be thread-safe.
+     *
+     * @param signatureLabels Labels of verified signatures
+     * @param executor        Executor running verification tasks
+     * @return Verification results, in the same order as given labels
+     * @see #verifyAll(Collection)
+     */
+    public List<VerificationResult> verifyAll(Collection<String> signatureLabels, Executor executor) {
+        return SignatureVerifier.verifyAll(this, signatureLabels, executor);
+    }
+
     /**
      * Returns required Signature Parameters
      *
@@ -162,6 +238,24 @@ public class VerificationSpec {
         return publicKeyGetter;
     }
 
+    /**
+     * Returns asynchronous public key supplier
+     *
+     * @return Function which for given <em>keyid</em> returns a stage completed with related public key, or null if not provided
+     */
+    Function<String, ? extends CompletionStage<PublicKeyInfo>> getAsyncPublicKeyGetter() {
+        return asyncPublicKeyGetter;
+    }
+
+    /**
+     * Returns maximum time of waiting for asynchronously fetched public key
+     *
+     * @return Public key timeout, or null when not limited
+     */
+    Duration getPublicKeyTimeout() {
+        return publicKeyTimeout;
+    }
+
     /**
      * Returns Signature label
      *
@@ -180,6 +274,51 @@ public class VerificationSpec {
         return applicationTag;
     }
 
+    /**
+     * Returns whether the signature base should be included in the message of {@link SignatureException.ErrorCode#INCORRECT_SIGNATURE} exceptions
+     *
+     * @return True if the signature base should be included in exception messages
+     */
+    boolean isSignatureBaseInException() {
+        return signatureBaseInException;
+    }
+
+    /**
+     * Returns maximum total length of <em>Signature-Input</em> header values, and of <em>Signature</em> header values
+     *
+     * @return Maximum header length, or null when not limited
+     */
+    Integer getMaximumHeaderLength() {
+        return maximumHeaderLength;
+    }
+
+    /**
+     * Returns maximum number of signatures, i.e. members of <em>Signature-Input</em> dictionary
+     *
+     * @return Maximum number of signatures, or null when not limited
+     */
+    Integer getMaximumSignatures() {
+        return maximumSignatures;
+    }
+
+    /**
+     * Returns filter of accepted key IDs
+     *
+     * @return Predicate accepting allowed <em>keyid</em> values, or null when all key IDs are passed to the public key getter
+     */
+    Predicate<String> getKeyIdFilter() {
+        return keyIdFilter;
+    }
+
+    /**
+     * Returns limits used when parsing <em>Signature-Input</em> and <em>Signature</em> headers
+     *
+     * @return Parser limits
+     */
+    ParserLimits getParserLimits() {
+        return parserLimits;
+    }
+
     /**
      * Returns a builder used to construct {@link VerificationSpec} object
      *
@@ -205,8 +344,15 @@ public class VerificationSpec {
         private Integer maximumAgeSeconds;
         private Integer maximumSkewSeconds;
         private CheckedFunction<String, PublicKeyInfo> publicKeyGetter;
+        private Function<String, ? extends CompletionStage<PublicKeyInfo>> asyncPublicKeyGetter;
+        private Duration publicKeyTimeout;
         private String signatureLabel;
         private String applicationTag;
+        private boolean signatureBaseInException;
+        private Integer maximumHeaderLength;
+        private Integer maximumSignatures;
+        private Predicate<String> keyIdFilter;
+        private ParserLimits parserLimits = ParserLimits.DEFAULT;
 
 
         private Builder() {
@@ -346,6 +492,37 @@ public class VerificationSpec {
             return this;
         }
 
+        /**
+         * Sets asynchronous public key supplier function, used by {@link VerificationSpec#verifyAsync()}
+         * <p>
+         * The supplier should return a stage completed with {@link PublicKeyInfo} object for given key ID, or completed exceptionally in case of problems.
+         * The stage is converted by {@link CompletionStage#toCompletableFuture()}, and that future is cancelled when verification is cancelled or times out.
+         * Suppliers sharing futures between calls should therefore return copies.
+         * <p>
+         * If synchronous {@link #publicKeyGetter(CheckedFunction)} is not provided, {@link VerificationSpec#verify()} waits for the stage returned by
+         * this supplier.
+         *
+         * @param asyncPublicKeyGetter Function which for given <em>keyid</em> returns a stage completed with related public key
+         * @return This builder
+         */
+        public Builder asyncPublicKeyGetter(Function<String, ? extends CompletionStage<PublicKeyInfo>> asyncPublicKeyGetter) {
+            this.asyncPublicKeyGetter = asyncPublicKeyGetter;
+            return this;
+        }
+
+        /**
+         * Sets maximum time of waiting for public key provided by {@link #asyncPublicKeyGetter(Function) asynchronous public key getter}
+         * <p>
+         * When exceeded, verification fails with {@link SignatureException.ErrorCode#INVALID_KEY}. Not limited by default.
+         *
+         * @param timeout Maximum time of waiting for public key
+         * @return This builder
+         */
+        public Builder publicKeyTimeout(Duration timeout) {
+            this.publicKeyTimeout = timeout;
+            return this;
+        }
+
         /**
          * Sets label of signature to verify
          * <p>
@@ -383,6 +560,76 @@ public class VerificationSpec {
             return this;
         }
 
+        /**
+         * Sets whether the computed signature base is included in the message of the exception thrown when signature is incorrect. Defaults to false.
+         * <p>
+         * Intended for debugging. When disabled, incorrect signatures are reported without building the signature base text, which limits
+         * allocations when many invalid signatures are received.
+         *
+         * @param signatureBaseInException True to include the signature base in {@link SignatureException.ErrorCode#INCORRECT_SIGNATURE} messages
+         * @return This builder
+         */
+        public Builder signatureBaseInException(boolean signatureBaseInException) {
+            this.signatureBaseInException = signatureBaseInException;
+            return this;
+        }
+
+        /**
+         * Sets maximum length of <em>Signature-Input</em> and <em>Signature</em> headers. Each header is checked separately, and length of a header
+         * provided as multiple values is the sum of their lengths.
+         * <p>
+         * The check is done before anything is parsed, so oversized headers are rejected at almost no cost.
+         *
+         * @param maximumHeaderLength Maximum header length in characters
+         * @return This builder
+         */
+        public Builder maximumHeaderLength(int maximumHeaderLength) {
+            this.maximumHeaderLength = maximumHeaderLength;
+            return this;
+        }
+
+        /**
+         * Sets maximum number of signatures in verified message, i.e. number of members of <em>Signature-Input</em> dictionary
+         * <p>
+         * Signatures are counted by scanning the header for member boundaries, before any member is parsed.
+         *
+         * @param maximumSignatures Maximum number of signatures
+         * @return This builder
+         */
+        public Builder maximumSignatures(int maximumSignatures) {
+            this.maximumSignatures = maximumSignatures;
+            return this;
+        }
+
+        /**
+         * Sets filter of accepted key IDs, e.g. a lookup in a locally cached set of known keys
+         * <p>
+         * The filter is applied to <em>keyid</em> parameter as soon as verified signature's parameters are parsed. Signatures with rejected key IDs
+         * fail with {@link SignatureException.ErrorCode#INVALID_KEY}, before the signature base is computed and before the public key getter is called.
+         * Missing <em>keyid</em> is passed to the filter as null.
+         *
+         * @param keyIdFilter Predicate returning true for allowed key IDs
+         * @return This builder
+         */
+        public Builder keyIdFilter(Predicate<String> keyIdFilter) {
+            this.keyIdFilter = keyIdFilter;
+            return this;
+        }
+
+        /**
+         * Sets limits used when parsing <em>Signature-Input</em> and <em>Signature</em> headers. Input exceeding the limits is rejected with
+         * {@link SignatureException.ErrorCode#LIMIT_EXCEEDED}, as soon as the limit is reached.
+         * <p>
+         * By default, {@link ParserLimits#DEFAULT} are used.
+         *
+         * @param parserLimits Parser limits
+         * @return This builder
+         */
+        public Builder parserLimits(ParserLimits parserLimits) {
+            this.parserLimits = Objects.requireNonNull(parserLimits);
+            return this;
+        }
+
         /**
          * Constructs {@link VerificationSpec} object from this builder
          * <p>
@@ -392,7 +639,12 @@ public class VerificationSpec {
          */
         public VerificationSpec build() {
             Objects.requireNonNull(signatureContext, "SignatureContext not provided");
-            Objects.requireNonNull(publicKeyGetter, "PublicKeyGetter not provided");
+            var usedPublicKeyGetter = publicKeyGetter;
+            if (usedPublicKeyGetter == null && asyncPublicKeyGetter != null) {
+                usedPublicKeyGetter = getBlockingPublicKeyGetter(asyncPublicKeyGetter, publicKeyTimeout);
+            }
+
+            Objects.requireNonNull(usedPublicKeyGetter, "PublicKeyGetter not provided");
 
             if (signatureLabel == null && applicationTag == null) {
                 throw new NullPointerException("Both signatureLabel and applicationTag not provided. One of them is required.");
@@ -407,7 +659,29 @@ public class VerificationSpec {
             }
 
             return new VerificationSpec(requiredParameters, forbiddenParameters, requiredComponents, requiredIfPresentComponents, signatureContext,
-                    maximumAgeSeconds, maximumSkewSeconds, publicKeyGetter, signatureLabel, applicationTag);
+                    maximumAgeSeconds, maximumSkewSeconds, usedPublicKeyGetter, asyncPublicKeyGetter,
+                    publicKeyTimeout, signatureLabel, applicationTag, signatureBaseInException, maximumHeaderLength, maximumSignatures, keyIdFilter,
+                    parserLimits);
+        }
+
+        private static CheckedFunction<String, PublicKeyInfo> getBlockingPublicKeyGetter(
+                Function<String, ? extends CompletionStage<PublicKeyInfo>> asyncPublicKeyGetter, Duration timeout) {
+            return keyId -> {
+                var future = asyncPublicKeyGetter.apply(keyId).toCompletableFuture();
+
+                try {
+                    return timeout != null ? future.get(timeout.toNanos(), TimeUnit.NANOSECONDS) : future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                } catch (InterruptedException e) {
+                    future.cancel(true);
+                    Thread.currentThread().interrupt();
+                    throw e;
+                } catch (Exception e) {
+                    future.cancel(true);
+                    throw e;
+                }
+            };
         }
     }
 
@@ -24,9 +24,46 @@ package net.visma.autopay.http.structured;
 import java.util.Collection;
 
 /**
- * Utility for checking string validity: for Structured Strings, Tokens and map keys
+ * Utility for checking string validity: for Structured Strings, Tokens and map keys.
+ * <p>
+ * Character classes are looked up in a precomputed table of ASCII characters. Each entry holds one bit per class, so checking a character is a
+ * single array access, and validating a whole value is a plain loop without any lambdas or streams.
  */
 final class CharacterValidator {
+    private static final int STRING_CHAR = 1;
+    private static final int FIRST_KEY_CHAR = 1 << 1;
+    private static final int KEY_CHAR = 1 << 2;
+    private static final int FIRST_TOKEN_CHAR = 1 << 3;
+    private static final int TOKEN_CHAR = 1 << 4;
+    private static final byte[] CHARACTER_CLASSES = new byte[128];
+
+    static {
+        for (int ch = ' '; ch <= '~'; ch++) {
+            CHARACTER_CLASSES[ch] |= STRING_CHAR;
+
+            if (ch != ' ' && "\"(),;<=>?@[\\]{}".indexOf(ch) == -1) {
+                CHARACTER_CLASSES[ch] |= TOKEN_CHAR;
+            }
+        }
+
+        for (int ch = 'a'; ch <= 'z'; ch++) {
+            CHARACTER_CLASSES[ch] |= FIRST_KEY_CHAR | KEY_CHAR | FIRST_TOKEN_CHAR;
+        }
+
+        for (int ch = 'A'; ch <= 'Z'; ch++) {
+            CHARACTER_CLASSES[ch] |= FIRST_TOKEN_CHAR;
+        }
+
+        for (int ch = '0'; ch <= '9'; ch++) {
+            CHARACTER_CLASSES[ch] |= KEY_CHAR;
+        }
+
+        for (var ch : "_-.".toCharArray()) {
+            CHARACTER_CLASSES[ch] |= KEY_CHAR;
+        }
+
+        CHARACTER_CLASSES['*'] |= FIRST_KEY_CHAR | KEY_CHAR | FIRST_TOKEN_CHAR;
+    }
 
     /**
      * Checks if given character is a valid {@link StructuredString} character
@@ -35,7 +72,7 @@ final class CharacterValidator {
      * @return True if valid Structured String character
      */
     static boolean isStringChar(int ch) {
-        return ch >= ' ' && ch <= '~';
+        return hasClass(ch, STRING_CHAR);
     }
 
     /**
@@ -45,7 +82,7 @@ final class CharacterValidator {
      * @return True if valid first key character
      */
     static boolean isFirstKeyChar(int ch) {
-        return (ch >= 'a' && ch <= 'z') || ch == '*';
+        return hasClass(ch, FIRST_KEY_CHAR);
     }
 
     /**
@@ -55,7 +92,7 @@ final class CharacterValidator {
      * @return True if valid second or subsequent key character
      */
     static boolean isKeyChar(int ch) {
-        return (ch >= 'a' && ch <='z') || (ch >= '0' && ch <= '9') || ch == '_' || ch == '-' || ch == '.' || ch == '*';
+        return hasClass(ch, KEY_CHAR);
     }
 
     /**
@@ -65,7 +102,7 @@ final class CharacterValidator {
      * @return True if valid first Structured Token character
      */
     static boolean isFirstTokenChar(int ch) {
-        return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || ch == '*';
+        return hasClass(ch, FIRST_TOKEN_CHAR);
     }
 
     /**
@@ -75,7 +112,31 @@ final class CharacterValidator {
      * @return True if valid second or subsequent Structured Token character
      */
     static boolean isTokenChar(int ch) {
-        return ch >= '!' && ch <= '~' && "\"(),;<=>?@[\\]{}".indexOf(ch) == -1;
+        return hasClass(ch, TOKEN_CHAR);
+    }
+
+    /**
+     * Finds the end of a run of valid key characters, second or subsequent
+     *
+     * @param input Characters to scan
+     * @param start Index of the first character to check
+     * @param end   Index after the last character to check
+     * @return Index of the first non-key character, or {@code end} if all characters are valid
+     */
+    static int skipKeyChars(CharSequence input, int start, int end) {
+        return skip(input, start, end, KEY_CHAR);
+    }
+
+    /**
+     * Finds the end of a run of valid token characters, second or subsequent
+     *
+     * @param input Characters to scan
+     * @param start Index of the first character to check
+     * @param end   Index after the last character to check
+     * @return Index of the first non-token character, or {@code end} if all characters are valid
+     */
+    static int skipTokenChars(CharSequence input, int start, int end) {
+        return skip(input, start, end, TOKEN_CHAR);
     }
 
     /**
@@ -85,7 +146,7 @@ final class CharacterValidator {
      * @throws IllegalArgumentException When invalid value provided
      */
     static void validateString(String string) {
-        if (!string.chars().allMatch(CharacterValidator::isStringChar)) {
+        if (skip(string, 0, string.length(), STRING_CHAR) != string.length()) {
             throw new IllegalArgumentException("Illegal String characters: " + string);
         }
     }
@@ -99,9 +160,9 @@ final class CharacterValidator {
     static void validateToken(String token) {
         if (token.isEmpty()) {
             throw new IllegalArgumentException("Empty token value");
-        } else if (!CharacterValidator.isFirstTokenChar(token.charAt(0))) {
+        } else if (!isFirstTokenChar(token.charAt(0))) {
             throw new IllegalArgumentException("Illegal first Token character: " + token);
-        } else if (!token.chars().allMatch(CharacterValidator::isTokenChar)) {
+        } else if (skipTokenChars(token, 1, token.length()) != token.length()) {
             throw new IllegalArgumentException("Illegal Token characters: " + token);
         }
     }
@@ -116,14 +177,28 @@ final class CharacterValidator {
         for (var key : keys) {
             if (key.isEmpty()) {
                 throw new IllegalArgumentException("Empty key");
-            } else if (!CharacterValidator.isFirstKeyChar(key.charAt(0))) {
+            } else if (!isFirstKeyChar(key.charAt(0))) {
                 throw new IllegalArgumentException("Illegal first key character: " + key);
-            } else if (!key.chars().allMatch(CharacterValidator::isKeyChar)) {
+            } else if (skipKeyChars(key, 1, key.length()) != key.length()) {
                 throw new IllegalArgumentException("Illegal key characters: " + key);
             }
         }
     }
 
+    private static boolean hasClass(int ch, int characterClass) {
+        return ch >= 0 && ch < CHARACTER_CLASSES.length && (CHARACTER_CLASSES[ch] & characterClass) != 0;
+    }
+
+    private static int skip(CharSequence input, int start, int end, int characterClass) {
+        var index = start;
+
+        while (index < end && hasClass(input.charAt(index), characterClass)) {
+            index++;
+        }
+
+        return index;
+    }
+
     private CharacterValidator() {
         throw new UnsupportedOperationException();
     }
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.structured;
+
+import java.util.Objects;
+
+/**
+ * Limits of resources used when parsing Structured Fields, for protection against hostile input
+ * <p>
+ * Limits are checked while parsing, so parsing stops as soon as a limit is exceeded, with {@link StructuredException.ErrorCode#LIMIT_EXCEEDED}.
+ * {@link #DEFAULT} limits equal to the minimums which, according to the specification, parsers must support. They are used when verifying
+ * signatures and digests. Parse methods without a ParserLimits argument use {@link #UNLIMITED}.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-structured-field-values">Structured Field Values</a>
+ */
+public final class ParserLimits {
+    /**
+     * Default limits: input length of 65536 characters, 1024 List or Dictionary members, 256 Inner List members, 256 Parameters per Item
+     * and Byte Sequences of 12288 bytes (16384 Base64 characters)
+     */
+    public static final ParserLimits DEFAULT = builder().build();
+
+    /**
+     * No limits
+     */
+    public static final ParserLimits UNLIMITED = builder()
+            .maximumInputLength(Integer.MAX_VALUE)
+            .maximumMembers(Integer.MAX_VALUE)
+            .maximumInnerListLength(Integer.MAX_VALUE)
+            .maximumParameters(Integer.MAX_VALUE)
+            .maximumByteSequenceLength(Integer.MAX_VALUE)
+            .build();
+
+    private final int maximumInputLength;
+    private final int maximumMembers;
+    private final int maximumInnerListLength;
+    private final int maximumParameters;
+    private final int maximumByteSequenceLength;
+
+    private ParserLimits(int maximumInputLength, int maximumMembers, int maximumInnerListLength, int maximumParameters,
+                         int maximumByteSequenceLength) {
+        this.maximumInputLength = maximumInputLength;
+        this.maximumMembers = maximumMembers;
+        this.maximumInnerListLength = maximumInnerListLength;
+        this.maximumParameters = maximumParameters;
+        this.maximumByteSequenceLength = maximumByteSequenceLength;
+    }
+
+    /**
+     * Returns maximum length of parsed input, in characters. For multiple header lines, it's the length of lines joined with commas.
+     *
+     * @return Maximum input length
+     */
+    public int getMaximumInputLength() {
+        return maximumInputLength;
+    }
+
+    /**
+     * Returns maximum number of List or Dictionary members
+     *
+     * @return Maximum number of members
+     */
+    public int getMaximumMembers() {
+        return maximumMembers;
+    }
+
+    /**
+     * Returns maximum number of Inner List members
+     *
+     * @return Maximum Inner List length
+     */
+    public int getMaximumInnerListLength() {
+        return maximumInnerListLength;
+    }
+
+    /**
+     * Returns maximum number of Parameters of a single Item or Inner List
+     *
+     * @return Maximum number of Parameters
+     */
+    public int getMaximumParameters() {
+        return maximumParameters;
+    }
+
+    /**
+     * Returns maximum length of decoded Byte Sequence, in bytes
+     *
+     * @return Maximum Byte Sequence length
+     */
+    public int getMaximumByteSequenceLength() {
+        return maximumByteSequenceLength;
+    }
+
+    /**
+     * Returns a builder used to construct {@link ParserLimits} objects. Builder is initialized with {@link #DEFAULT} limits.
+     *
+     * @return A ParserLimits builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder class to build {@link ParserLimits} objects
+     */
+    public static class Builder {
+        private int maximumInputLength = 65536;
+        private int maximumMembers = 1024;
+        private int maximumInnerListLength = 256;
+        private int maximumParameters = 256;
+        private int maximumByteSequenceLength = 12288;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets maximum length of parsed input, in characters
+         *
+         * @param maximumInputLength Maximum input length
+         * @return This builder
+         */
+        public Builder maximumInputLength(int maximumInputLength) {
+            this.maximumInputLength = maximumInputLength;
+            return this;
+        }
+
+        /**
+         * Sets maximum number of List or Dictionary members
+         *
+         * @param maximumMembers Maximum number of members
+         * @return This builder
+         */
+        public Builder maximumMembers(int maximumMembers) {
+            this.maximumMembers = maximumMembers;
+            return this;
+        }
+
+        /**
+         * Sets maximum number of Inner List members
+         *
+         * @param maximumInnerListLength Maximum Inner List length
+         * @return This builder
+         */
+        public Builder maximumInnerListLength(int maximumInnerListLength) {
+            this.maximumInnerListLength = maximumInnerListLength;
+            return this;
+        }
+
+        /**
+         * Sets maximum number of Parameters of a single Item or Inner List
+         *
+         * @param maximumParameters Maximum number of Parameters
+         * @return This builder
+         */
+        public Builder maximumParameters(int maximumParameters) {
+            this.maximumParameters = maximumParameters;
+            return this;
+        }
+
+        /**
+         * Sets maximum length of decoded Byte Sequence, in bytes
+         *
+         * @param maximumByteSequenceLength Maximum Byte Sequence length
+         * @return This builder
+         */
+        public Builder maximumByteSequenceLength(int maximumByteSequenceLength) {
+            this.maximumByteSequenceLength = maximumByteSequenceLength;
+            return this;
+        }
+
+        /**
+         * Constructs {@link ParserLimits} object from this builder
+         *
+         * @return ParserLimits object
+         */
+        public ParserLimits build() {
+            return new ParserLimits(maximumInputLength, maximumMembers, maximumInnerListLength, maximumParameters, maximumByteSequenceLength);
+        }
+    }
+
+    /**
+     * Compares the specified object with these ParserLimits for equality. Returns true if the given object is of the same class and has the same
+     * limits.
+     *
+     * @param o Object to be compared with these ParserLimits
+     * @return True is specified object is equal to these ParserLimits
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        var that = (ParserLimits) o;
+        return maximumInputLength == that.maximumInputLength && maximumMembers == that.maximumMembers
+                && maximumInnerListLength == that.maximumInnerListLength && maximumParameters == that.maximumParameters
+                && maximumByteSequenceLength == that.maximumByteSequenceLength;
+    }
+
+    /**
+     * Returns hash code for these ParserLimits
+     *
+     * @return The hash code for these ParserLimits
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(maximumInputLength, maximumMembers, maximumInnerListLength, maximumParameters, maximumByteSequenceLength);
+    }
+
+    /**
+     * String representation of these ParserLimits
+     *
+     * @return String representation of these ParserLimits
+     */
+    @Override
+    public String toString() {
+        return "ParserLimits{" +
+                "maximumInputLength=" + maximumInputLength +
+                ", maximumMembers=" + maximumMembers +
+                ", maximumInnerListLength=" + maximumInnerListLength +
+                ", maximumParameters=" + maximumParameters +
+                ", maximumByteSequenceLength=" + maximumByteSequenceLength +
+                '}';
+    }
+}
@@ -28,6 +28,8 @@ import java.util.Objects;
 
 /**
  * Class representing Structured Byte Sequences.  Also used as "bare" Bytes in Structured parameters.
+ * <p>
+ * Given byte array is not copied, and it must not be modified after the item is created.
  *
  * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-items">Items</a>
  * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-byte-sequences">Byte Sequences</a>
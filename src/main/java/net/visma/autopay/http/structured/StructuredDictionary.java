@@ -22,6 +22,7 @@
 package net.visma.autopay.http.structured;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,10 +37,11 @@ import java.util.stream.Collectors;
  */
 public final class StructuredDictionary implements StructuredField, StructuredMap {
     private final Map<String, StructuredItem> value;
+    private String serialized;
 
     private StructuredDictionary(Map<String, StructuredItem> value) {
         CharacterValidator.validateKeys(value.keySet());
-        this.value = value;
+        this.value = Collections.unmodifiableMap(value);
     }
 
     /**
@@ -115,22 +117,29 @@ public final class StructuredDictionary implements StructuredField, StructuredMa
      */
     @Override
     public String serialize() {
-        var sb = new StringBuilder();
-        var separator = "";
-
-        for (var entry : value.entrySet()) {
-            var item = entry.getValue();
-            sb.append(separator).append(entry.getKey());
-            separator = ", ";
-
-            if (item instanceof StructuredBoolean && item.boolValue()) {
-                sb.append(item.parameters().serialize());
-            } else {
-                sb.append('=').append(item.serialize());
+        var result = serialized;
+
+        if (result == null) {
+            var sb = new StringBuilder();
+            var separator = "";
+
+            for (var entry : value.entrySet()) {
+                var item = entry.getValue();
+                sb.append(separator).append(entry.getKey());
+                separator = ", ";
+
+                if (item instanceof StructuredBoolean && item.boolValue()) {
+                    sb.append(item.parameters().serialize());
+                } else {
+                    item.serializeTo(sb.append('='));
+                }
             }
+
+            result = sb.toString();
+            serialized = result;
         }
 
-        return sb.toString();
+        return result;
     }
 
     /**
@@ -142,7 +151,20 @@ public final class StructuredDictionary implements StructuredField, StructuredMa
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
      */
     public static StructuredDictionary parse(String httpHeader) throws StructuredException {
-        return StructuredParser.parseDictionary(httpHeader);
+        return StructuredParser.parseDictionary(httpHeader, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses given string for Structured Dictionary, according to the specification, within given limits
+     *
+     * @param httpHeader String to parse, e.g. HTTP header
+     * @param limits     Limits of parsed input, to protect against excessive resource usage
+     * @return Parsed Structured Dictionary
+     * @throws StructuredException Thrown in case of malformatted string, wrong item type or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
+     */
+    public static StructuredDictionary parse(String httpHeader, ParserLimits limits) throws StructuredException {
+        return StructuredParser.parseDictionary(httpHeader, limits);
     }
 
     /**
@@ -154,7 +176,141 @@ public final class StructuredDictionary implements StructuredField, StructuredMa
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
      */
     public static StructuredDictionary parse(Collection<String> httpHeaders) throws StructuredException {
-        return StructuredParser.parseDictionary(httpHeaders);
+        return StructuredParser.parseDictionary(httpHeaders, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses given HTTP header values for Structured Dictionary, according to the specification, within given limits
+     *
+     * @param httpHeaders HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param limits      Limits of parsed input, to protect against excessive resource usage
+     * @return Parsed Structured Dictionary
+     * @throws StructuredException Thrown in case of malformatted string, wrong item type or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
+     */
+    public static StructuredDictionary parse(Collection<String> httpHeaders, ParserLimits limits) throws StructuredException {
+        return StructuredParser.parseDictionary(httpHeaders, limits);
+    }
+
+    /**
+     * Parses given ASCII-encoded bytes for Structured Dictionary, according to the specification
+     * <p>
+     * Intended for raw HTTP header values, e.g. obtained from network buffers. Parsing is done directly over given array, without decoding it
+     * to a String first.
+     *
+     * @param httpHeader ASCII-encoded bytes to parse, e.g. HTTP header
+     * @return Parsed Structured Dictionary
+     * @throws StructuredException Thrown in case of malformatted input or wrong item type
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
+     */
+    public static StructuredDictionary parse(byte[] httpHeader) throws StructuredException {
+        return StructuredParser.parseDictionary(httpHeader);
+    }
+
+    /**
+     * Finds a single member of Structured Dictionary, without building the whole dictionary.
+     * <p>
+     * All members are parsed and validated as in {@link #parse(String)}, but only the requested one is returned, and other members are not
+     * collected. If the key occurs multiple times, the last occurrence is returned, as with {@link #parse(String)} followed by
+     * {@link #getItem(String)}.
+     *
+     * @param httpHeader String to parse, e.g. HTTP header
+     * @param key        Dictionary key to find
+     * @param itemClass  Expected class of the member. {@link StructuredItem} can be used to accept any member.
+     * @param <T>        Type of the member
+     * @return Dictionary member stored at requested key, or empty Optional if the key is not present
+     * @throws StructuredException Thrown in case of malformatted string or wrong member class
+     */
+    public static <T extends StructuredItem> Optional<T> findMember(String httpHeader, String key, Class<T> itemClass) throws StructuredException {
+        return findMember(httpHeader, key, itemClass, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Finds a single member of Structured Dictionary, without building the whole dictionary, within given limits
+     *
+     * @param httpHeader String to parse, e.g. HTTP header
+     * @param key        Dictionary key to find
+     * @param itemClass  Expected class of the member. {@link StructuredItem} can be used to accept any member.
+     * @param limits     Limits of parsed input, to protect against excessive resource usage
+     * @param <T>        Type of the member
+     * @return Dictionary member stored at requested key, or empty Optional if the key is not present
+     * @throws StructuredException Thrown in case of malformatted string, wrong member class or exceeded limits
+     * @see #findMember(String, String, Class)
+     */
+    public static <T extends StructuredItem> Optional<T> findMember(String httpHeader, String key, Class<T> itemClass, ParserLimits limits)
+            throws StructuredException {
+        return castMember(StructuredParser.findDictionaryMember(httpHeader, key, limits), itemClass);
+    }
+
+    /**
+     * Finds a single member of Structured Dictionary, provided as multiple HTTP header values, without building the whole dictionary
+     *
+     * @param httpHeaders HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param key         Dictionary key to find
+     * @param itemClass   Expected class of the member. {@link StructuredItem} can be used to accept any member.
+     * @param <T>         Type of the member
+     * @return Dictionary member stored at requested key, or empty Optional if the key is not present
+     * @throws StructuredException Thrown in case of malformatted string or wrong member class
+     * @see #findMember(String, String, Class)
+     */
+    public static <T extends StructuredItem> Optional<T> findMember(Collection<String> httpHeaders, String key, Class<T> itemClass)
+            throws StructuredException {
+        return findMember(httpHeaders, key, itemClass, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Finds a single member of Structured Dictionary, provided as multiple HTTP header values, without building the whole dictionary, within
+     * given limits
+     *
+     * @param httpHeaders HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param key         Dictionary key to find
+     * @param itemClass   Expected class of the member. {@link StructuredItem} can be used to accept any member.
+     * @param limits      Limits of parsed input, to protect against excessive resource usage
+     * @param <T>         Type of the member
+     * @return Dictionary member stored at requested key, or empty Optional if the key is not present
+     * @throws StructuredException Thrown in case of malformatted string, wrong member class or exceeded limits
+     * @see #findMember(String, String, Class)
+     */
+    public static <T extends StructuredItem> Optional<T> findMember(Collection<String> httpHeaders, String key, Class<T> itemClass,
+                                                                    ParserLimits limits) throws StructuredException {
+        return castMember(StructuredParser.findDictionaryMember(httpHeaders, key, limits), itemClass);
+    }
+
+    private static <T extends StructuredItem> Optional<T> castMember(StructuredItem member, Class<T> itemClass) throws StructuredException {
+        if (member == null) {
+            return Optional.empty();
+        } else if (itemClass.isInstance(member)) {
+            return Optional.of(itemClass.cast(member));
+        } else {
+            throw new StructuredException(StructuredException.ErrorCode.WRONG_ITEM_CLASS, itemClass.getSimpleName() + " requested but "
+                    + member.getClass().getSimpleName() + " is present");
+        }
+    }
+
+    /**
+     * Counts members of Structured Dictionary, provided as multiple HTTP header values, without parsing them.
+     * <p>
+     * Members are scanned for their keys and boundaries only, so their values are not validated. Each occurrence of a key is counted.
+     *
+     * @param httpHeaders HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @return Number of dictionary members
+     * @throws StructuredException Thrown in case of malformatted string
+     */
+    public static int countMembers(Collection<String> httpHeaders) throws StructuredException {
+        return StructuredParser.countDictionaryMembers(httpHeaders, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Counts members of Structured Dictionary, provided as multiple HTTP header values, without parsing them, within given limits
+     *
+     * @param httpHeaders HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param limits      Limits of parsed input, to protect against excessive resource usage
+     * @return Number of dictionary members
+     * @throws StructuredException Thrown in case of malformatted string or exceeded limits
+     * @see #countMembers(Collection)
+     */
+    public static int countMembers(Collection<String> httpHeaders, ParserLimits limits) throws StructuredException {
+        return StructuredParser.countDictionaryMembers(httpHeaders, limits);
     }
 
 
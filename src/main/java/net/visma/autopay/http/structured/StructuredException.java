@@ -87,5 +87,10 @@ public class StructuredException extends Exception {
          * Invalid Base64 string provided when parsing {@link StructuredBytes}
          */
         INVALID_BYTES,
+
+        /**
+         * Input exceeds one of {@link ParserLimits}, e.g. too many Dictionary members
+         */
+        LIMIT_EXCEEDED,
     }
 }
@@ -21,6 +21,9 @@
  */
 package net.visma.autopay.http.structured;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * Common interface for all Structured Fields
@@ -38,6 +41,61 @@ public interface StructuredField {
      */
     String serialize();
 
+    /**
+     * Serializes this item according to the specification and appends the result to given {@link StringBuilder}.
+     * <p>
+     * Serialized forms are cached by immutable Structured Field objects, so nested members are appended without building intermediate Strings.
+     *
+     * @param sb StringBuilder to append to
+     * @return Given StringBuilder
+     * @see #serialize()
+     */
+    default StringBuilder serializeTo(StringBuilder sb) {
+        return sb.append(serialize());
+    }
+
+    /**
+     * Serializes this item according to the specification and appends the result to given {@link Appendable}, e.g. a {@link java.io.Writer}
+     * of an outgoing HTTP header.
+     *
+     * @param out Appendable to append to
+     * @param <A>  Type of given Appendable
+     * @return Given Appendable
+     * @throws IOException Thrown by given Appendable
+     * @see #serialize()
+     */
+    default <A extends Appendable> A serializeTo(A out) throws IOException {
+        out.append(serialize());
+        return out;
+    }
+
+    /**
+     * Serializes this item according to the specification and writes the result to given {@link ByteBuffer}, as ASCII bytes.
+     * <p>
+     * Serialized Structured Fields contain only ASCII characters, so one byte is written per character. Nothing is written if the buffer doesn't
+     * have enough space remaining.
+     *
+     * @param buffer Buffer to write to, starting at its current position
+     * @return Given buffer, with position advanced by the number of written bytes
+     * @throws BufferOverflowException Thrown if there are fewer bytes remaining in the buffer than needed
+     * @throws java.nio.ReadOnlyBufferException Thrown if given buffer is read-only
+     * @see #serialize()
+     */
+    default ByteBuffer serializeTo(ByteBuffer buffer) {
+        var serialized = serialize();
+        var length = serialized.length();
+
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) serialized.charAt(i));
+        }
+
+        return buffer;
+    }
+
     /**
      * Parses given string for Structured Field, according to the specification
      * <p>
@@ -63,4 +121,19 @@ public interface StructuredField {
     static StructuredField parse(String httpHeader) throws StructuredException {
         return StructuredParser.parseAny(httpHeader);
     }
+
+    /**
+     * Parses given string for Structured Field, according to the specification, within given limits
+     * <p>
+     * Type of returned value is detected as described in {@link #parse(String)}.
+     *
+     * @param httpHeader String to parse, e.g. an HTTP header
+     * @param limits     Limits of parsed input, to protect against excessive resource usage
+     * @return Parsed Structured Field
+     * @throws StructuredException Thrown in case of malformatted string or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-structured-fields">Parsing Structured Fields</a>
+     */
+    static StructuredField parse(String httpHeader, ParserLimits limits) throws StructuredException {
+        return StructuredParser.parseAny(httpHeader, limits);
+    }
 }
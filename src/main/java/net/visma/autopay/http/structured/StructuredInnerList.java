@@ -23,6 +23,7 @@ package net.visma.autopay.http.structured;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -38,7 +39,7 @@ public final class StructuredInnerList extends StructuredItem implements Structu
 
     private StructuredInnerList(List<StructuredItem> value, StructuredParameters parameters) {
         super(parameters);
-        this.value = value;
+        this.value = Collections.unmodifiableList(value);
     }
 
     /**
@@ -138,7 +139,7 @@ public final class StructuredInnerList extends StructuredItem implements Structu
         sb.append('(');
 
         for (var item : value) {
-            sb.append(separator).append(item.serialize());
+            item.serializeTo(sb.append(separator));
             separator = " ";
         }
 
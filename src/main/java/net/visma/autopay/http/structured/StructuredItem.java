@@ -40,6 +40,7 @@ import java.util.Optional;
  */
 public abstract class StructuredItem implements StructuredField {
     private final StructuredParameters parameters;
+    private String serialized;
 
     /**
      * Constructs an Item with given parameters
@@ -66,7 +67,16 @@ public abstract class StructuredItem implements StructuredField {
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#ser-innerlist">Serializing an Inner List</a>
      */
     public String serialize() {
-        return serializeValue() + parameters.serialize();
+        var result = serialized;
+
+        if (result == null) {
+            var value = serializeValue();
+            var params = parameters.serialize();
+            result = params.isEmpty() ? value : value + params;
+            serialized = result;
+        }
+
+        return result;
     }
 
     /**
@@ -90,6 +100,21 @@ public abstract class StructuredItem implements StructuredField {
         return StructuredParser.parseItem(httpHeader);
     }
 
+    /**
+     * Parses given string for Structured Item, according to the specification, within given limits
+     * <p>
+     * Class of returned value depends on parsed content, and it can be any of {@link StructuredItem}'s subclasses, excluding {@link StructuredInnerList}.
+     *
+     * @param httpHeader String to parse, e.g. an HTTP header
+     * @param limits     Limits of parsed input, to protect against excessive resource usage
+     * @return Parsed Structured Item: a subclass of {@link StructuredItem}
+     * @throws StructuredException Thrown in case of malformatted string or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-an-item">Parsing an Item</a>
+     */
+    public static StructuredItem parse(String httpHeader, ParserLimits limits) throws StructuredException {
+        return StructuredParser.parseItem(httpHeader, limits);
+    }
+
     /**
      * Returns {@link Object} representation of this Structured Item's value.
      * <p>
@@ -24,6 +24,7 @@ package net.visma.autopay.http.structured;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -35,9 +36,10 @@ import java.util.stream.Collectors;
  */
 public final class StructuredList implements StructuredField, StructuredCollection {
     private final List<StructuredItem> value;
+    private String serialized;
 
     private StructuredList(List<StructuredItem> value) {
-        this.value = value;
+        this.value = Collections.unmodifiableList(value);
     }
 
     /**
@@ -140,15 +142,22 @@ public final class StructuredList implements StructuredField, StructuredCollecti
      */
     @Override
     public String serialize() {
-        var sb = new StringBuilder();
-        var separator = "";
+        var result = serialized;
 
-        for (var item : value) {
-            sb.append(separator).append(item.serialize());
-            separator = ", ";
+        if (result == null) {
+            var sb = new StringBuilder();
+            var separator = "";
+
+            for (var item : value) {
+                item.serializeTo(sb.append(separator));
+                separator = ", ";
+            }
+
+            result = sb.toString();
+            serialized = result;
         }
 
-        return sb.toString();
+        return result;
     }
 
     /**
@@ -160,7 +169,20 @@ public final class StructuredList implements StructuredField, StructuredCollecti
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
      */
     public static StructuredList parse(String httpHeader) throws StructuredException {
-        return StructuredParser.parseList(httpHeader);
+        return StructuredParser.parseList(httpHeader, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses given string for Structured List, according to the specification, within given limits
+     *
+     * @param httpHeader String to parse, e.g. HTTP header
+     * @param limits     Limits of parsed input, to protect against excessive resource usage
+     * @return Parsed Structured List
+     * @throws StructuredException Thrown in case of malformatted string, wrong item type or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
+     */
+    public static StructuredList parse(String httpHeader, ParserLimits limits) throws StructuredException {
+        return StructuredParser.parseList(httpHeader, limits);
     }
 
     /**
@@ -172,7 +194,35 @@ public final class StructuredList implements StructuredField, StructuredCollecti
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
      */
     public static StructuredList parse(Collection<String> httpHeaders) throws StructuredException {
-        return StructuredParser.parseList(httpHeaders);
+        return StructuredParser.parseList(httpHeaders, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses given HTTP header values for Structured List, according to the specification, within given limits
+     *
+     * @param httpHeaders HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param limits      Limits of parsed input, to protect against excessive resource usage
+     * @return Parsed Structured List
+     * @throws StructuredException Thrown in case of malformatted string, wrong item type or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
+     */
+    public static StructuredList parse(Collection<String> httpHeaders, ParserLimits limits) throws StructuredException {
+        return StructuredParser.parseList(httpHeaders, limits);
+    }
+
+    /**
+     * Parses given ASCII-encoded bytes for Structured List, according to the specification
+     * <p>
+     * Intended for raw HTTP header values, e.g. obtained from network buffers. Parsing is done directly over given array, without decoding it
+     * to a String first.
+     *
+     * @param httpHeader ASCII-encoded bytes to parse, e.g. HTTP header
+     * @return Parsed Structured List
+     * @throws StructuredException Thrown in case of malformatted input or wrong item type
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
+     */
+    public static StructuredList parse(byte[] httpHeader) throws StructuredException {
+        return StructuredParser.parseList(httpHeader);
     }
 
 
@@ -22,6 +22,7 @@
 package net.visma.autopay.http.structured;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -33,6 +34,8 @@ import java.util.Objects;
  */
 public final class StructuredParameters implements StructuredMap {
     private final Map<String, StructuredItem> parameterMap;
+    private String serialized;
+
     /**
      * Object representing empty parameter map
      */
@@ -40,7 +43,7 @@ public final class StructuredParameters implements StructuredMap {
 
     private StructuredParameters(Map<String, StructuredItem> parameterMap) {
         CharacterValidator.validateKeys(parameterMap.keySet());
-        this.parameterMap = parameterMap;
+        this.parameterMap = Collections.unmodifiableMap(parameterMap);
     }
 
     /**
@@ -92,18 +95,25 @@ public final class StructuredParameters implements StructuredMap {
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#ser-params">Serializing Parameters</a>
      */
     String serialize() {
-        var sb = new StringBuilder();
+        var result = serialized;
+
+        if (result == null) {
+            var sb = new StringBuilder();
 
-        for (var entry : parameterMap.entrySet()) {
-            var item = entry.getValue();
-            sb.append(';').append(entry.getKey());
+            for (var entry : parameterMap.entrySet()) {
+                var item = entry.getValue();
+                sb.append(';').append(entry.getKey());
 
-            if (!(item instanceof StructuredBoolean) || !item.boolValue()) {
-                sb.append('=').append(item.serialize());
+                if (!(item instanceof StructuredBoolean) || !item.boolValue()) {
+                    item.serializeTo(sb.append('='));
+                }
             }
+
+            result = sb.toString();
+            serialized = result;
         }
 
-        return sb.toString();
+        return result;
     }
 
 
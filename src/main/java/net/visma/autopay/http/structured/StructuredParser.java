@@ -21,76 +21,193 @@
  */
 package net.visma.autopay.http.structured;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 
 /**
  * Parser converting strings (HTTP header values) to Structured Fields
+ * <p>
+ * Input is read directly from given {@link CharSequence}, without copying. Multiple header lines and ASCII-encoded byte arrays are accessed through
+ * {@link CharSequence} views. Keys and values are extracted as substrings of the input.
  *
  * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-structured-fields">Parsing Structured Fields</a>
  */
 final class StructuredParser {
-    private final char[] input;
-    private int pos;
     private static final char EOF = (char) -1;
+    private static final int MAX_INTEGER_DIGITS = 15;
+    private static final int MAX_DECIMAL_INTEGER_DIGITS = 12;
+    private static final int MAX_FRACTIONAL_DIGITS = 3;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000};
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final CharSequence input;
+    private final int start;
+    private final int end;
+    private final ParserLimits limits;
+    private int pos;
+
+    private StructuredParser(CharSequence input) throws StructuredException {
+        this(input, ParserLimits.UNLIMITED);
+    }
 
-    private StructuredParser(String input) throws StructuredException {
+    private StructuredParser(CharSequence input, ParserLimits limits) throws StructuredException {
         if (input == null) {
             throw new StructuredException(StructuredException.ErrorCode.EMPTY_INPUT, "Null input for the parser");
         }
 
-        this.input = (input + EOF).toCharArray();
-        trim();
+        if (input.length() > limits.getMaximumInputLength()) {
+            throw new StructuredException(StructuredException.ErrorCode.LIMIT_EXCEEDED, "Input longer than " + limits.getMaximumInputLength() + " characters");
+        }
+
+        var trimmedStart = 0;
+        var trimmedEnd = input.length();
+
+        while (trimmedStart < trimmedEnd && input.charAt(trimmedStart) == ' ') {
+            trimmedStart++;
+        }
+
+        while (trimmedEnd > trimmedStart && input.charAt(trimmedEnd - 1) == ' ') {
+            trimmedEnd--;
+        }
+
+        this.input = input;
+        this.start = trimmedStart;
+        this.end = trimmedEnd;
+        this.limits = limits;
+        this.pos = trimmedStart;
     }
 
     /**
      * Parses given string for Structured Dictionary, according to the specification
      *
-     * @param input String to parse, e.g. HTTP header
+     * @param input  String to parse, e.g. HTTP header
+     * @param limits Limits of parsed input
      * @return Parsed Structured Dictionary
      * @throws StructuredException Thrown in case of malformatted string or wrong item type
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
      */
-    static StructuredDictionary parseDictionary(String input) throws StructuredException {
-        return new StructuredParser(input).parseDictionary();
+    static StructuredDictionary parseDictionary(String input, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(input, limits).parseDictionary();
     }
 
     /**
      * Parses given HTTP header values for Structured Dictionary, according to the specification
      *
      * @param inputLines HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param limits     Limits of parsed input
      * @return Parsed Structured Dictionary
      * @throws StructuredException Thrown in case of malformatted string or wrong item type
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
      */
-    static StructuredDictionary parseDictionary(Collection<String> inputLines) throws StructuredException {
-        return parseDictionary(String.join(",", inputLines));
+    static StructuredDictionary parseDictionary(Collection<String> inputLines, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(new JoinedLines(inputLines), limits).parseDictionary();
+    }
+
+    /**
+     * Parses given ASCII-encoded bytes for Structured Dictionary, according to the specification
+     *
+     * @param input ASCII-encoded bytes to parse, e.g. raw HTTP header value
+     * @return Parsed Structured Dictionary
+     * @throws StructuredException Thrown in case of malformatted input or wrong item type
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
+     */
+    static StructuredDictionary parseDictionary(byte[] input) throws StructuredException {
+        return new StructuredParser(input != null ? new AsciiBytes(input, 0, input.length) : null).parseDictionary();
+    }
+
+    /**
+     * Finds a member of Structured Dictionary without building the whole dictionary.
+     * <p>
+     * All members are parsed and validated as in {@link #parseDictionary(String, ParserLimits)}, but keys of other members are only compared with
+     * requested key, and other members are discarded instead of being collected. If the key occurs multiple times, the last occurrence is used.
+     *
+     * @param input  String to scan, e.g. HTTP header
+     * @param key    Dictionary key to find
+     * @param limits Limits of parsed input
+     * @return Parsed dictionary member or null if the key is not present
+     * @throws StructuredException Thrown in case of malformatted string
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-dictionary">Parsing a Dictionary</a>
+     */
+    static StructuredItem findDictionaryMember(String input, String key, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(input, limits).findDictionaryMember(key);
+    }
+
+    /**
+     * Finds a member of Structured Dictionary, provided as multiple HTTP header values, without building the whole dictionary
+     *
+     * @param inputLines HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param key        Dictionary key to find
+     * @param limits     Limits of parsed input
+     * @return Parsed dictionary member or null if the key is not present
+     * @throws StructuredException Thrown in case of malformatted string
+     * @see #findDictionaryMember(String, String, ParserLimits)
+     */
+    static StructuredItem findDictionaryMember(Collection<String> inputLines, String key, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(new JoinedLines(inputLines), limits).findDictionaryMember(key);
+    }
+
+    /**
+     * Counts members of Structured Dictionary, provided as multiple HTTP header values, without parsing them. Members are scanned for their
+     * keys and boundaries only, so their values are not validated. Each occurrence of a key is counted.
+     *
+     * @param inputLines HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param limits     Limits of parsed input
+     * @return Number of dictionary members
+     * @throws StructuredException Thrown in case of malformatted string
+     */
+    static int countDictionaryMembers(Collection<String> inputLines, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(new JoinedLines(inputLines), limits).scanDictionary(null, null);
     }
 
     /**
      * Parses given string for Structured List, according to the specification
      *
-     * @param input String to parse, e.g. HTTP header
+     * @param input  String to parse, e.g. HTTP header
+     * @param limits Limits of parsed input
      * @return Parsed Structured List
      * @throws StructuredException Thrown in case of malformatted string or wrong item type
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
      */
-    static StructuredList parseList(String input) throws StructuredException {
-        return new StructuredParser(input).parseList();
+    static StructuredList parseList(String input, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(input, limits).parseList();
     }
 
     /**
      * Parses given HTTP header values for Structured List, according to the specification
      *
      * @param inputLines HTTP header values, for common header name, provided in order of occurrence in HTTP message
+     * @param limits     Limits of parsed input
      * @return Parsed Structured List
      * @throws StructuredException Thrown in case of malformatted string or wrong item type
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
      */
-    static StructuredList parseList(Collection<String> inputLines) throws StructuredException {
-        return parseList(String.join(",", inputLines));
+    static StructuredList parseList(Collection<String> inputLines, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(new JoinedLines(inputLines), limits).parseList();
+    }
+
+    /**
+     * Parses given ASCII-encoded bytes for Structured List, according to the specification
+     *
+     * @param input ASCII-encoded bytes to parse, e.g. raw HTTP header value
+     * @return Parsed Structured List
+     * @throws StructuredException Thrown in case of malformatted input or wrong item type
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-a-list">Parsing a List</a>
+     */
+    static StructuredList parseList(byte[] input) throws StructuredException {
+        return new StructuredParser(input != null ? new AsciiBytes(input, 0, input.length) : null).parseList();
     }
 
     /**
@@ -126,7 +243,20 @@ final class StructuredParser {
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-an-item">Parsing an Item</a>
      */
     static StructuredItem parseItem(String input) throws StructuredException {
-        var parser = new StructuredParser(input);
+        return parseItem(input, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses given string for Structured Item, according to the specification, within given limits
+     *
+     * @param input  String to parse, e.g. an HTTP header
+     * @param limits Limits of parsed input
+     * @return Parsed Structured Item: a subclass of {@link StructuredItem}
+     * @throws StructuredException Thrown in case of malformatted string or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-an-item">Parsing an Item</a>
+     */
+    static StructuredItem parseItem(String input, ParserLimits limits) throws StructuredException {
+        var parser = new StructuredParser(input, limits);
         var item = parser.parseItem();
         parser.validateTail();
 
@@ -145,28 +275,47 @@ final class StructuredParser {
      * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-structured-fields">Parsing Structured Fields</a>
      */
     static StructuredField parseAny(String input) throws StructuredException {
-        return new StructuredParser(input).parseAny();
+        return parseAny(input, ParserLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses given string for Structured Field, according to the specification, within given limits
+     *
+     * @param input  String to parse, e.g. an HTTP header
+     * @param limits Limits of parsed input
+     * @return Parsed Structured Field
+     * @throws StructuredException Thrown in case of malformatted string or exceeded limits
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8941.html#name-parsing-structured-fields">Parsing Structured Fields</a>
+     */
+    static StructuredField parseAny(String input, ParserLimits limits) throws StructuredException {
+        return new StructuredParser(input, limits).parseAny();
     }
 
     private StructuredField parseAny() throws StructuredException {
         var insideString = false;
         var isCollection = isEmptyBeforeProcessing();
+        var isDictionary = isDictionaryMemberAt(pos);
         StructuredField result;
 
-        for (char c = current(); c != EOF; c = next()) {
+        for (char c = current(); c != EOF && !isDictionary; c = next()) {
             if (c == '"') {
                 insideString = !insideString;
             } else if (insideString && c == '\\') {
                 next();
             } else if (!insideString && c == ',') {
                 isCollection = true;
-                break;
+                next();
+                skipWhitespaces();
+                isDictionary = isDictionaryMemberAt(pos);
+                pos--;
             }
         }
 
         rewind();
 
-        if (isCollection) {
+        if (isDictionary) {
+            result = parseDictionary();
+        } else if (isCollection) {
             try {
                 result = parseList();
             } catch (StructuredException e) {
@@ -180,51 +329,53 @@ final class StructuredParser {
         return result;
     }
 
+    /**
+     * Checks if a dictionary member with a value, i.e. a key followed by "=", starts at given index. Such a member can't be a list member, so
+     * there is no need to try parsing the input as a list.
+     */
+    private boolean isDictionaryMemberAt(int index) {
+        if (index >= end || !CharacterValidator.isFirstKeyChar(input.charAt(index))) {
+            return false;
+        }
+
+        var keyEnd = CharacterValidator.skipKeyChars(input, index + 1, end);
+
+        return keyEnd < end && input.charAt(keyEnd) == '=';
+    }
+
     private String parseKey() throws StructuredException {
-        var sb = new StringBuilder();
+        var keyStart = pos;
         char c = current();
 
         if (!CharacterValidator.isFirstKeyChar(c)) {
             throw new StructuredException(StructuredException.ErrorCode.UNEXPECTED_CHARACTER, "Unexpected character when parsing key: " + c);
         }
 
-        sb.append(c);
-
-        while ((c = next()) != EOF) {
-            if (CharacterValidator.isKeyChar(c)) {
-                sb.append(c);
-            } else {
-                break;
-            }
-        }
+        pos = CharacterValidator.skipKeyChars(input, pos + 1, end);
 
-        return sb.toString();
+        return substring(keyStart, pos);
     }
 
     private StructuredToken parseToken() {
-        var sb = new StringBuilder();
-        char c;
-        sb.append(current());
-
-        while ((c = next()) != EOF) {
-            if (!CharacterValidator.isTokenChar(c)) {
-                break;
-            }
-            sb.append(c);
-        }
+        var tokenStart = pos;
+        pos = CharacterValidator.skipTokenChars(input, pos + 1, end);
 
-        return StructuredToken.of(sb.toString());
+        return StructuredToken.of(substring(tokenStart, pos));
     }
 
     private StructuredString parseString() throws StructuredException {
-        var sb = new StringBuilder();
+        var valueStart = pos + 1;
+        StringBuilder sb = null;
         char c;
 
         while ((c = next()) != EOF) {
             if (c == '"') {
-                next();
                 break;
             } else if (c == '\\') {
+                if (sb == null) {
+                    sb = new StringBuilder().append(input, valueStart, pos);
+                }
+
                 c = next();
                 if (c == '"' || c == '\\') {
                     sb.append(c);
@@ -232,7 +383,9 @@ final class StructuredParser {
                     throw new StructuredException(StructuredException.ErrorCode.UNEXPECTED_CHARACTER, "Unexpected escaped character: " + c);
                 }
             } else if (CharacterValidator.isStringChar(c)) {
-                sb.append(c);
+                if (sb != null) {
+                    sb.append(c);
+                }
             } else {
                 throw new StructuredException(StructuredException.ErrorCode.UNEXPECTED_CHARACTER, "Unexpected character when parsing string: " + c);
             }
@@ -242,7 +395,10 @@ final class StructuredParser {
             throw new StructuredException(StructuredException.ErrorCode.MISSING_CHARACTER, "Missing closing double quote");
         }
 
-        return StructuredString.of(sb.toString());
+        var value = sb != null ? sb.toString() : substring(valueStart, pos);
+        next();
+
+        return StructuredString.of(value);
     }
 
     private StructuredBoolean parseBoolean() throws StructuredException {
@@ -257,58 +413,62 @@ final class StructuredParser {
     }
 
     private StructuredItem parseNumber() throws StructuredException {
-        var sb = new StringBuilder();
-        char c;
-        var isDecimal = false;
-        var digitIndex = current() == '-' ? 1 : 0;
-        sb.append(current());
-
-        while ((c = next()) != EOF) {
+        var negative = current() == '-';
+        var integerPart = 0L;
+        var integerDigits = 0;
+        var fractionalPart = 0L;
+        var fractionalChars = 0;
+        var dots = 0;
+        char c = negative ? next() : current();
+
+        // Digits are accumulated directly. Accumulation stops at lengths already rejected below, so it never overflows.
+        while (true) {
             if (c >= '0' && c <= '9') {
-                sb.append(c);
+                if (dots == 0) {
+                    if (integerDigits++ < MAX_INTEGER_DIGITS) {
+                        integerPart = integerPart * 10 + (c - '0');
+                    }
+                } else if (fractionalChars++ < MAX_FRACTIONAL_DIGITS) {
+                    fractionalPart = fractionalPart * 10 + (c - '0');
+                }
             } else if (c == '.') {
-                sb.append(c);
-                isDecimal = true;
+                if (dots++ > 0) {
+                    fractionalChars++;
+                }
             } else {
                 break;
             }
-        }
 
-        var value = sb.toString();
-
-        if (isDecimal) {
-            var dotIndex = value.indexOf('.');
+            c = next();
+        }
 
-            if (value.length() - dotIndex > 4) {
+        if (dots > 0) {
+            if (fractionalChars > MAX_FRACTIONAL_DIGITS) {
                 throw new StructuredException(StructuredException.ErrorCode.WRONG_NUMBER, "Too long fractional part");
-            } else if (dotIndex - digitIndex > 12) {
+            } else if (integerDigits > MAX_DECIMAL_INTEGER_DIGITS) {
                 throw new StructuredException(StructuredException.ErrorCode.WRONG_NUMBER, "Too long decimal part");
+            } else if (dots > 1 || integerDigits + fractionalChars == 0) {
+                throw new StructuredException(StructuredException.ErrorCode.WRONG_NUMBER, "Numeric value out of range");
             }
-        } else if (value.length() - digitIndex > 15) {
-            throw new StructuredException(StructuredException.ErrorCode.WRONG_NUMBER, "Too long integer");
-        }
 
-        try {
-            if (isDecimal) {
-                return StructuredDecimal.of(value);
-            } else {
-                return StructuredInteger.of(Long.parseLong(value));
-            }
-        } catch (NumberFormatException e) {
+            var unscaledValue = integerPart * POWERS_OF_TEN[fractionalChars] + fractionalPart;
+            return StructuredDecimal.of(BigDecimal.valueOf(negative ? -unscaledValue : unscaledValue, fractionalChars));
+        } else if (integerDigits > MAX_INTEGER_DIGITS) {
+            throw new StructuredException(StructuredException.ErrorCode.WRONG_NUMBER, "Too long integer");
+        } else if (integerDigits == 0) {
             throw new StructuredException(StructuredException.ErrorCode.WRONG_NUMBER, "Numeric value out of range");
         }
+
+        return StructuredInteger.of(negative ? -integerPart : integerPart);
     }
 
     private StructuredBytes parseBytes() throws StructuredException {
-        var sb = new StringBuilder();
+        var valueStart = pos + 1;
         char c;
 
         while ((c = next()) != EOF) {
             if (c == ':') {
-                next();
                 break;
-            } else {
-                sb.append(c);
             }
         }
 
@@ -316,11 +476,59 @@ final class StructuredParser {
             throw new StructuredException(StructuredException.ErrorCode.MISSING_CHARACTER, "Missing closing colon");
         }
 
-        try {
-            return StructuredBytes.of(Base64.getDecoder().decode(sb.toString()));
-        } catch (IllegalArgumentException e) {
+        var value = decodeBase64(valueStart, pos);
+        next();
+
+        return StructuredBytes.of(value);
+    }
+
+    /**
+     * Decodes Base64 characters of the input, between given positions, directly into the result array. Follows the rules of
+     * {@link java.util.Base64#getDecoder()}: padding is optional, but when present it must complete the last 4-character unit.
+     */
+    private byte[] decodeBase64(int valueStart, int valueEnd) throws StructuredException {
+        var padding = 0;
+
+        while (padding < 2 && valueEnd - padding > valueStart && input.charAt(valueEnd - padding - 1) == '=') {
+            padding++;
+        }
+
+        var dataEnd = valueEnd - padding;
+        var remainder = (dataEnd - valueStart) % 4;
+
+        if (remainder == 1 || (padding > 0 && remainder + padding != 4)) {
             throw new StructuredException(StructuredException.ErrorCode.INVALID_BYTES, "Invalid Base64 string");
         }
+
+        var length = (dataEnd - valueStart) / 4 * 3 + (remainder > 0 ? remainder - 1 : 0);
+
+        if (length > limits.getMaximumByteSequenceLength()) {
+            throw new StructuredException(StructuredException.ErrorCode.LIMIT_EXCEEDED, "Byte Sequence longer than " + limits.getMaximumByteSequenceLength() + " bytes");
+        }
+
+        var result = new byte[length];
+        var bits = 0;
+        var bitCount = 0;
+        var resultPos = 0;
+
+        for (int i = valueStart; i < dataEnd; i++) {
+            var ch = input.charAt(i);
+            var sextet = ch < BASE64_VALUES.length ? BASE64_VALUES[ch] : -1;
+
+            if (sextet < 0) {
+                throw new StructuredException(StructuredException.ErrorCode.INVALID_BYTES, "Invalid Base64 string");
+            }
+
+            bits = (bits << 6) | sextet;
+            bitCount += 6;
+
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                result[resultPos++] = (byte) (bits >> bitCount);
+            }
+        }
+
+        return result;
     }
 
     private StructuredItem parseBareItem() throws StructuredException {
@@ -347,12 +555,16 @@ final class StructuredParser {
 
     private StructuredParameters parseConfirmedParameters() throws StructuredException {
         var parameterMap = new LinkedHashMap<String, StructuredItem>();
+        var parameterCount = 0;
 
         while (current() == ';') {
             next();
             skipSpaces();
 
             var key = parseKey();
+            // Repeated keys are counted too, since each of them has to be parsed
+            checkLimit(parameterCount++, limits.getMaximumParameters(), "Parameters");
+
             if (current() == '=') {
                 next();
                 parameterMap.put(key, parseBareItem());
@@ -390,6 +602,7 @@ final class StructuredParser {
                 break;
             }
 
+            checkLimit(items.size(), limits.getMaximumInnerListLength(), "Inner List members");
             items.add(parseItem());
 
             if (current() != ')' && current() != ' ') {
@@ -410,6 +623,8 @@ final class StructuredParser {
         var items = new ArrayList<StructuredItem>();
 
         while (current() != EOF) {
+            checkLimit(items.size(), limits.getMaximumMembers(), "List members");
+
             if (current() == '(') {
                 items.add(parseInnerList());
             } else {
@@ -436,24 +651,87 @@ final class StructuredParser {
 
     private StructuredDictionary parseDictionary() throws StructuredException {
         var items = new LinkedHashMap<String, StructuredItem>();
+        var memberCount = 0;
 
         while (current() != EOF) {
             var key = parseKey();
-            StructuredItem item;
+            // Repeated keys are counted too, consistently with countDictionaryMembers()
+            checkLimit(memberCount++, limits.getMaximumMembers(), "Dictionary members");
+            items.put(key, parseDictionaryValue());
+            skipWhitespaces();
 
-            if (current() == '=') {
-                char c = next();
+            if (current() == ',') {
+                next();
+                skipWhitespaces();
 
-                if (c == '(') {
-                    item = parseInnerList();
-                } else {
-                    item = parseItem();
+                if (current() == EOF) {
+                    throw new StructuredException(StructuredException.ErrorCode.UNEXPECTED_CHARACTER, "Trailing comma");
                 }
             } else {
-                item = StructuredBoolean.withParams(true, parseParameters());
+                break;
+            }
+        }
+
+        validateTail();
+        return StructuredDictionary.of(items);
+    }
+
+    private StructuredItem parseDictionaryValue() throws StructuredException {
+        if (current() == '=') {
+            char c = next();
+
+            if (c == '(') {
+                return parseInnerList();
+            } else {
+                return parseItem();
+            }
+        } else {
+            return StructuredBoolean.withParams(true, parseParameters());
+        }
+    }
+
+    private static void checkLimit(int currentCount, int maximumCount, String what) throws StructuredException {
+        if (currentCount >= maximumCount) {
+            throw new StructuredException(StructuredException.ErrorCode.LIMIT_EXCEEDED, "More than " + maximumCount + " " + what);
+        }
+    }
+
+    private StructuredItem findDictionaryMember(String key) throws StructuredException {
+        var foundMember = new StructuredItem[1];
+        scanDictionary(key, foundMember);
+
+        return foundMember[0];
+    }
+
+    /**
+     * Scans dictionary members for their keys. Member values are parsed when a member is to be found, and only skipped otherwise.
+     *
+     * @param key         Key to find, or null
+     * @param foundMember Array receiving the last member with given key, or null to skip member values without validating them
+     * @return Number of scanned members
+     */
+    private int scanDictionary(String key, StructuredItem[] foundMember) throws StructuredException {
+        var memberCount = 0;
+
+        while (current() != EOF) {
+            checkLimit(memberCount, limits.getMaximumMembers(), "Dictionary members");
+            var keyStart = pos;
+
+            if (!CharacterValidator.isFirstKeyChar(current())) {
+                throw new StructuredException(StructuredException.ErrorCode.UNEXPECTED_CHARACTER, "Unexpected character when parsing key: " + current());
+            }
+
+            pos = CharacterValidator.skipKeyChars(input, pos + 1, end);
+            memberCount++;
+
+            if (foundMember == null) {
+                skipDictionaryValue();
+            } else if (key != null && regionMatches(keyStart, key)) {
+                foundMember[0] = parseDictionaryValue();
+            } else {
+                parseDictionaryValue();
             }
 
-            items.put(key, item);
             skipWhitespaces();
 
             if (current() == ',') {
@@ -469,7 +747,60 @@ final class StructuredParser {
         }
 
         validateTail();
-        return StructuredDictionary.of(items);
+        return memberCount;
+    }
+
+    private void skipDictionaryValue() throws StructuredException {
+        var depth = 0;
+        char c;
+
+        while ((c = current()) != EOF) {
+            if (c == '"') {
+                skipString();
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if ((c == ',' || c == ' ' || c == '\t') && depth == 0) {
+                break;
+            }
+
+            next();
+        }
+
+        if (depth != 0) {
+            throw new StructuredException(StructuredException.ErrorCode.MISSING_CHARACTER, "Missing closing parenthesis");
+        }
+    }
+
+    private void skipString() throws StructuredException {
+        char c;
+
+        while ((c = next()) != EOF) {
+            if (c == '"') {
+                next();
+                return;
+            } else if (c == '\\') {
+                next();
+            }
+        }
+
+        throw new StructuredException(StructuredException.ErrorCode.MISSING_CHARACTER, "Missing closing double quote");
+    }
+
+    private boolean regionMatches(int regionStart, String string) {
+        if (pos - regionStart != string.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < string.length(); i++) {
+            if (input.charAt(regionStart + i) != string.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     private void validateTail() throws StructuredException {
@@ -479,41 +810,154 @@ final class StructuredParser {
     }
 
     private void skipWhitespaces() {
-        while (pos < input.length && (input[pos] == ' ' || input[pos] == '\t')) {
+        char c;
+
+        while ((c = current()) == ' ' || c == '\t') {
             pos++;
         }
     }
 
     private void skipSpaces() {
-        while (pos < input.length && input[pos] == ' ') {
+        while (current() == ' ') {
             pos++;
         }
     }
 
     private char current() {
-        return input[pos];
+        return pos < end ? input.charAt(pos) : EOF;
     }
 
     private char next() {
-        pos = Math.min(pos + 1, input.length - 1);
-        return input[pos];
+        if (pos < end) {
+            pos++;
+        }
+
+        return current();
     }
 
     private void rewind() {
-        pos = 0;
+        pos = start;
     }
 
     private boolean isEmptyBeforeProcessing() {
-        return input[pos] == EOF;
+        return pos >= end;
     }
 
-    private void trim() {
-        for (pos = 0; input[pos] == ' '; ) {
-            pos++;
+    private String substring(int substringStart, int substringEnd) {
+        return input.subSequence(substringStart, substringEnd).toString();
+    }
+
+    /**
+     * Read-only {@link CharSequence} view of ASCII-encoded bytes. Bytes outside ASCII range are mapped to characters 0x80-0xFF, which are rejected
+     * by the parser.
+     */
+    private static final class AsciiBytes implements CharSequence {
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        private AsciiBytes(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xff);
         }
 
-        for (int i = input.length - 2; i >= 0 && this.input[i] == ' '; i--) {
-            this.input[i] = EOF;
+        @Override
+        public CharSequence subSequence(int subStart, int subEnd) {
+            return new AsciiBytes(bytes, offset + subStart, subEnd - subStart);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Read-only {@link CharSequence} view of multiple header lines, joined with commas. Equivalent to {@code String.join(",", lines)}, but nothing is
+     * copied. Optimized for sequential access.
+     */
+    private static final class JoinedLines implements CharSequence {
+        private final CharSequence[] lines;
+        private final int[] lineStarts;
+        private final int length;
+        private int currentLine;
+
+        private JoinedLines(Collection<String> lines) {
+            this.lines = new CharSequence[lines.size()];
+            this.lineStarts = new int[lines.size()];
+            var lineStart = 0;
+            var index = 0;
+
+            for (var line : lines) {
+                this.lines[index] = String.valueOf(line);
+                this.lineStarts[index] = lineStart;
+                lineStart += this.lines[index].length() + 1;
+                index++;
+            }
+
+            this.length = Math.max(lineStart - 1, 0);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            var line = findLine(index);
+            var lineIndex = index - lineStarts[line];
+
+            return lineIndex < lines[line].length() ? lines[line].charAt(lineIndex) : ',';
+        }
+
+        @Override
+        public CharSequence subSequence(int subStart, int subEnd) {
+            var line = findLine(subStart);
+            var lineStart = lineStarts[line];
+
+            if (subEnd - lineStart <= lines[line].length()) {
+                return lines[line].subSequence(subStart - lineStart, subEnd - lineStart);
+            }
+
+            var sb = new StringBuilder(subEnd - subStart);
+
+            for (int i = subStart; i < subEnd; i++) {
+                sb.append(charAt(i));
+            }
+
+            return sb;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(",", lines);
+        }
+
+        private int findLine(int index) {
+            var line = currentLine;
+
+            if (index < lineStarts[line]) {
+                line = 0;
+            }
+
+            while (line + 1 < lineStarts.length && lineStarts[line + 1] <= index) {
+                line++;
+            }
+
+            currentLine = line;
+            return line;
         }
     }
 }
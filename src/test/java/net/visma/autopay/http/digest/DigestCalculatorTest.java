@@ -25,6 +25,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -45,6 +50,42 @@ class DigestCalculatorTest {
         assertThat(digestHeader).isEqualTo(expectedHeader);
     }
 
+    @Test
+    void digestIsCalculatedForStreamedContent() throws Exception {
+        // setup
+        var content = new byte[100_000];
+        for (var i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        var directBuffer = ByteBuffer.allocateDirect(content.length).put(content).flip();
+        var expectedHeader = DigestCalculator.calculateDigestHeader(content, DigestAlgorithm.SHA_512);
+
+        // execute
+        var streamHeader = DigestCalculator.calculateDigestHeader(new ByteArrayInputStream(content), DigestAlgorithm.SHA_512);
+        var bufferHeader = DigestCalculator.calculateDigestHeader(directBuffer, DigestAlgorithm.SHA_512);
+        var channelHeader = DigestCalculator.calculateDigestHeader(Channels.newChannel(new ByteArrayInputStream(content)), DigestAlgorithm.SHA_512);
+
+        // verify
+        assertThat(streamHeader).isEqualTo(expectedHeader);
+        assertThat(bufferHeader).isEqualTo(expectedHeader);
+        assertThat(channelHeader).isEqualTo(expectedHeader);
+        assertThat(directBuffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void digestIsCalculatedForMultipleAlgorithms() {
+        // setup
+        var content = new byte[]{1, 2, 4};
+        var expectedHeader = "sha-256=:1LKaloxAFzY43tjRdMhpV6+iEb5HnO4CDbpd/hJ9kco=:, "
+                + "sha-512=:coHEdEzqs9+9+KyUfLphvh5kUnyaLidyPfwWpcZMbRdqUi1WntQuxjT0jSvWL68VIeYWawbhBWcjSmeIqCyL3Q==:";
+
+        // execute
+        var digestHeader = DigestCalculator.calculateDigestHeader(content, List.of(DigestAlgorithm.SHA_256, DigestAlgorithm.SHA_512));
+
+        // verify
+        assertThat(digestHeader).isEqualTo(expectedHeader);
+    }
+
     @Test
     void digestIsCalculatedAccordingToPriority() throws DigestException {
         // setup
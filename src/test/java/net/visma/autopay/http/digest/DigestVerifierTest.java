@@ -22,6 +22,12 @@
 package net.visma.autopay.http.digest;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNoException;
@@ -40,6 +46,115 @@ class DigestVerifierTest {
         assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, content));
     }
 
+    @Test
+    void correctDigestIsVerifiedForStreamedContent() throws Exception {
+        // setup
+        var content = new byte[]{1, 2, 4};
+        var header = "md5=:V9tg6T+1JldSH4+Zy8c5jw==:,sha-256=:1LKaloxAFzY43tjRdMhpV6+iEb5HnO4CDbpd/hJ9kco=:";
+        var digester = DigestVerifier.createDigester(header);
+        digester.update(new byte[]{1, 2}).update(ByteBuffer.wrap(new byte[]{4}));
+
+        // execute & verify
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, new ByteArrayInputStream(content)));
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, ByteBuffer.wrap(content)));
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, Channels.newChannel(new ByteArrayInputStream(content))));
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, digester));
+    }
+
+    @Test
+    void invalidDigestIsDetectedForStreamedContent() {
+        // setup
+        var content = new byte[]{1, 2, 4, 8};
+        var header = "sha-512=:coHEdEzqs9+9+KyUfLphvh5kUnyaLidyPfwWpcZMbRdqUi1WntQuxjT0jSvWL68VIeYWawbhBWcjSmeIqCyL3Q==:";
+
+        // execute & verify
+        assertThatThrownBy(() -> DigestVerifier.verifyDigestHeader(header, new ByteArrayInputStream(content)))
+                .isInstanceOfSatisfying(DigestException.class, e -> assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.INCORRECT_DIGEST));
+    }
+
+    @Test
+    void unsupportedAlgorithmsAreDetectedWhenCreatingDigester() {
+        // setup
+        var header = "md5=:V9tg6T+1JldSH4+Zy8c5jw==:";
+
+        // execute & verify
+        assertThatThrownBy(() -> DigestVerifier.createDigester(header))
+                .isInstanceOfSatisfying(DigestException.class, e -> assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.UNSUPPORTED_ALGORITHM));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"ANY, true, true", "STRONGEST, false, true", "FIRST_SUPPORTED, false, false", "ALL, false, false"})
+    void verificationPolicyIsApplied(DigestVerificationPolicy policy, boolean sha256CorrectResult, boolean sha512CorrectResult) {
+        // setup
+        var content = new byte[]{1, 2, 4};
+        var correctSha256 = "sha-256=:1LKaloxAFzY43tjRdMhpV6+iEb5HnO4CDbpd/hJ9kco=:";
+        var correctSha512 = "sha-512=:coHEdEzqs9+9+KyUfLphvh5kUnyaLidyPfwWpcZMbRdqUi1WntQuxjT0jSvWL68VIeYWawbhBWcjSmeIqCyL3Q==:";
+        var incorrectSha256 = "sha-256=:A5BYxvLAy0ksUzsKTRTvd8wPeKvMztUofYShogEc+4E=:";
+        var incorrectSha512 = "sha-512=:WZDPaVn/7XgHaAy8pmojAkGWoRx2UFChF41A2svX+TaPm+AbwAgBWnrIiYllu7BNNyealdVLvRwEmTHWXvJwew==:";
+        var sha256CorrectHeader = "md5=:V9tg6T+1JldSH4+Zy8c5jw==:, " + incorrectSha512 + ", " + correctSha256;
+        var sha512CorrectHeader = "md5=:V9tg6T+1JldSH4+Zy8c5jw==:, " + incorrectSha256 + ", " + correctSha512;
+
+        // execute
+        var sha256CorrectVerified = isVerified(sha256CorrectHeader, content, policy);
+        var sha512CorrectVerified = isVerified(sha512CorrectHeader, content, policy);
+
+        // verify
+        assertThat(sha256CorrectVerified).isEqualTo(sha256CorrectResult);
+        assertThat(sha512CorrectVerified).isEqualTo(sha512CorrectResult);
+    }
+
+    @Test
+    void verificationPolicyIsAppliedForStreamedContent() {
+        // setup
+        var content = new byte[]{1, 2, 4};
+        var incorrectSha256 = "sha-256=:A5BYxvLAy0ksUzsKTRTvd8wPeKvMztUofYShogEc+4E=:";
+        var correctSha512 = "sha-512=:coHEdEzqs9+9+KyUfLphvh5kUnyaLidyPfwWpcZMbRdqUi1WntQuxjT0jSvWL68VIeYWawbhBWcjSmeIqCyL3Q==:";
+        var header = incorrectSha256 + ", " + correctSha512;
+        var policy = DigestVerificationPolicy.ALL;
+
+        // execute & verify
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, new ByteArrayInputStream(content),
+                DigestVerificationPolicy.STRONGEST));
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, ByteBuffer.wrap(content),
+                DigestVerificationPolicy.STRONGEST));
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header,
+                Channels.newChannel(new ByteArrayInputStream(content)), DigestVerificationPolicy.STRONGEST));
+        assertThatThrownBy(() -> DigestVerifier.verifyDigestHeader(header, new ByteArrayInputStream(content), policy))
+                .isInstanceOfSatisfying(DigestException.class, e -> assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.INCORRECT_DIGEST));
+        assertThatThrownBy(() -> DigestVerifier.verifyDigestHeader(header, ByteBuffer.wrap(content), policy))
+                .isInstanceOfSatisfying(DigestException.class, e -> assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.INCORRECT_DIGEST));
+        assertThatThrownBy(() -> DigestVerifier.verifyDigestHeader(header, Channels.newChannel(new ByteArrayInputStream(content)), policy))
+                .isInstanceOfSatisfying(DigestException.class, e -> assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.INCORRECT_DIGEST));
+    }
+
+    @Test
+    void allDigestsAreVerifiedWhenRequested() {
+        // setup
+        var content = new byte[]{1, 2, 4};
+        var header = "sha-256=:1LKaloxAFzY43tjRdMhpV6+iEb5HnO4CDbpd/hJ9kco=:, "
+                + "sha-512=:coHEdEzqs9+9+KyUfLphvh5kUnyaLidyPfwWpcZMbRdqUi1WntQuxjT0jSvWL68VIeYWawbhBWcjSmeIqCyL3Q==:";
+
+        // execute & verify
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, content, DigestVerificationPolicy.ALL));
+    }
+
+    @Test
+    void digesterCalculatesOnlyDigestsNeededByPolicy() throws Exception {
+        // setup
+        var header = "sha-512=:coHEdEzqs9+9+KyUfLphvh5kUnyaLidyPfwWpcZMbRdqUi1WntQuxjT0jSvWL68VIeYWawbhBWcjSmeIqCyL3Q==:, "
+                + "sha-256=:A5BYxvLAy0ksUzsKTRTvd8wPeKvMztUofYShogEc+4E=:";
+
+        // execute
+        var strongestDigester = DigestVerifier.createDigester(header, DigestVerificationPolicy.STRONGEST);
+        var anyDigester = DigestVerifier.createDigester(header, DigestVerificationPolicy.ANY);
+        strongestDigester.update(new byte[]{1, 2, 4});
+
+        // verify
+        assertThat(strongestDigester.getAlgorithms()).containsExactly(DigestAlgorithm.SHA_512);
+        assertThat(anyDigester.getAlgorithms()).containsExactly(DigestAlgorithm.SHA_256, DigestAlgorithm.SHA_512);
+        assertThatNoException().isThrownBy(() -> DigestVerifier.verifyDigestHeader(header, strongestDigester));
+    }
+
     @Test
     void invalidDigestIsDetected() {
         // setup
@@ -104,4 +219,14 @@ class DigestVerifierTest {
             assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.INVALID_HEADER);
         });
     }
+
+    private static boolean isVerified(String header, byte[] content, DigestVerificationPolicy policy) {
+        try {
+            DigestVerifier.verifyDigestHeader(header, content, policy);
+            return true;
+        } catch (DigestException e) {
+            assertThat(e.getErrorCode()).isEqualTo(DigestException.ErrorCode.INCORRECT_DIGEST);
+            return false;
+        }
+    }
 }
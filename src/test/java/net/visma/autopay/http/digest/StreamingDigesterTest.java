@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.digest;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class StreamingDigesterTest {
+    @Test
+    void chunksAreDigested() {
+        // setup
+        var digester = StreamingDigester.of(DigestAlgorithm.SHA_256);
+        var expectedHeader = "sha-256=:1LKaloxAFzY43tjRdMhpV6+iEb5HnO4CDbpd/hJ9kco=:";
+
+        // execute
+        var header = digester.update(new byte[]{0, 1, 0}, 1, 1)
+                .update(new byte[]{2})
+                .update(ByteBuffer.allocateDirect(1).put((byte) 4).flip())
+                .finish();
+
+        // verify
+        assertThat(header).isEqualTo(expectedHeader);
+    }
+
+    @Test
+    void digesterIsResetAfterFinish() {
+        // setup
+        var digester = StreamingDigester.of(DigestAlgorithm.SHA_256);
+        digester.update(new byte[]{9, 9, 9}).finish();
+
+        // execute
+        var header = digester.update(new byte[]{1, 2, 4}).finish();
+
+        // verify
+        assertThat(header).isEqualTo(DigestCalculator.calculateDigestHeader(new byte[]{1, 2, 4}, DigestAlgorithm.SHA_256));
+    }
+
+    @Test
+    void multipleAlgorithmsAreDigestedInOnePass() {
+        // setup
+        var content = getLargeContent();
+        var expectedHeader = DigestCalculator.calculateDigestHeader(content, DigestAlgorithm.SHA_512) + ", "
+                + DigestCalculator.calculateDigestHeader(content, DigestAlgorithm.SHA_256);
+        var digester = StreamingDigester.of(List.of(DigestAlgorithm.SHA_512, DigestAlgorithm.SHA_256, DigestAlgorithm.SHA_512));
+
+        // execute
+        var arrayHeader = digester.update(content, 0, 100).update(content, 100, content.length - 100).finish();
+        var bufferHeader = digester.update(ByteBuffer.allocateDirect(content.length).put(content).flip()).finish();
+
+        // verify
+        assertThat(arrayHeader).isEqualTo(expectedHeader);
+        assertThat(bufferHeader).isEqualTo(expectedHeader);
+    }
+
+    @Test
+    void largeChunksAreDigestedInParallel() {
+        // setup
+        var content = getLargeContent();
+        var expectedHeader = StreamingDigester.of(List.of(DigestAlgorithm.SHA_256, DigestAlgorithm.SHA_512)).update(content).finish();
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var digester = StreamingDigester.of(List.of(DigestAlgorithm.SHA_256, DigestAlgorithm.SHA_512)).parallel(executor);
+
+            // execute
+            var arrayHeader = digester.update(content).finish();
+            var buffer = ByteBuffer.wrap(content);
+            var bufferHeader = digester.update(buffer).finish();
+
+            // verify
+            assertThat(arrayHeader).isEqualTo(expectedHeader);
+            assertThat(bufferHeader).isEqualTo(expectedHeader);
+            assertThat(buffer.hasRemaining()).isFalse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] getLargeContent() {
+        var content = new byte[StreamingDigester.PARALLEL_THRESHOLD * 3 + 17];
+
+        for (var i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+
+        return content;
+    }
+}
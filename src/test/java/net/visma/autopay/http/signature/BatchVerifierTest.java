@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class BatchVerifierTest {
+    private static final String UNKNOWN_KEY_ID = "unknown";
+
+    private final Map<String, AtomicInteger> keyFetchCounts = new ConcurrentHashMap<>();
+
+    @Test
+    void resultsAreReturnedInOrder() throws Exception {
+        // setup
+        var signedContext = getSignedContext(ObjectMother.getEdKeyId(), "/x");
+        var incorrectContext = SignatureContext.builder()
+                .headers(signedContext.getHeaders())
+                .method("POST")
+                .targetUri(URI.create("https://example.com/y"))
+                .build();
+        var missingHeaderContext = SignatureContext.builder().method("GET").build();
+        var contexts = List.of(
+                getSignedContext(ObjectMother.getHmacKeyId(), "/a"),
+                incorrectContext,
+                getSignedContext(ObjectMother.getEdKeyId(), "/b"),
+                missingHeaderContext,
+                getSignedContext(UNKNOWN_KEY_ID, "/c"));
+
+        // execute
+        var results = getBatchVerifier().verify(contexts);
+
+        // verify
+        assertThat(results).extracting(VerificationResult::getSignatureContext).containsExactlyElementsOf(contexts);
+        assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, false, true, false, false);
+        assertThat(results.get(0).getException()).isNull();
+        assertThat(results.get(1).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.INCORRECT_SIGNATURE);
+        assertThat(results.get(3).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.MISSING_HEADER);
+        assertThat(results.get(4).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
+    }
+
+    @Test
+    void malformedMessageDoesNotAbortBatch() throws Exception {
+        // setup
+        var signedContext = getSignedContext(ObjectMother.getEdKeyId(), "/x");
+        var malformedContext = SignatureContext.builder()
+                .method("POST")
+                .targetUri(URI.create("https://example.com/x"))
+                .header(SignatureHeaders.SIGNATURE_INPUT, signedContext.getHeaders().get("signature-input").get(0))
+                .header(SignatureHeaders.SIGNATURE, ObjectMother.SIGNATURE_LABEL + "=1")
+                .build();
+        var contexts = List.of(getSignedContext(ObjectMother.getEdKeyId(), "/a"), malformedContext, getSignedContext(ObjectMother.getHmacKeyId(), "/b"));
+
+        // execute
+        var results = getBatchVerifier().verify(contexts);
+
+        // verify
+        assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, false, true);
+        assertThat(results.get(1).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_STRUCTURED_HEADER);
+    }
+
+    @Test
+    void uncheckedExceptionDoesNotAbortBatch() throws Exception {
+        // setup
+        var failure = new IllegalStateException("filter failed");
+        var batchVerifier = BatchVerifier.builder()
+                .verificationSpec(getVerificationSpecBuilder()
+                        .keyIdFilter(keyId -> {
+                            if (ObjectMother.getHmacKeyId().equals(keyId)) {
+                                throw failure;
+                            }
+                            return true;
+                        })
+                        .build())
+                .build();
+        var contexts = List.of(getSignedContext(ObjectMother.getEdKeyId(), "/a"), getSignedContext(ObjectMother.getHmacKeyId(), "/b"));
+
+        // execute
+        var results = batchVerifier.verify(contexts);
+
+        // verify
+        assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, false);
+        assertThat(results.get(1).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.UNEXPECTED_EXCEPTION);
+        assertThat(results.get(1).getException()).hasCause(failure);
+    }
+
+    @Test
+    void publicKeyIsFetchedOncePerKeyId() throws Exception {
+        // setup
+        var contexts = new ArrayList<SignatureContext>();
+
+        for (int i = 0; i < BatchVerifier.WINDOW_SIZE + 100; i++) {
+            var keyId = i % 3 == 0 ? ObjectMother.getEdKeyId() : (i % 3 == 1 ? ObjectMother.getHmacKeyId() : UNKNOWN_KEY_ID);
+            contexts.add(getSignedContext(keyId, "/item/" + i));
+        }
+
+        // execute
+        var results = getBatchVerifier().verify(contexts.stream());
+
+        // verify
+        assertThat(results).hasSize(contexts.size());
+        assertThat(results.stream().filter(VerificationResult::isVerified).count()).isEqualTo(contexts.size() - contexts.size() / 3);
+        assertThat(keyFetchCounts).containsOnlyKeys(ObjectMother.getEdKeyId(), ObjectMother.getHmacKeyId(), UNKNOWN_KEY_ID);
+        assertThat(keyFetchCounts.values()).allSatisfy(count -> assertThat(count).hasValue(1));
+    }
+
+    @Test
+    void executorIsUsed() throws Exception {
+        // setup
+        var contexts = new ArrayList<SignatureContext>();
+
+        for (int i = 0; i < BatchVerifier.CHUNK_SIZE * 4; i++) {
+            contexts.add(getSignedContext(i % 2 == 0 ? ObjectMother.getEdKeyId() : ObjectMother.getHmacKeyId(), "/item/" + i));
+        }
+
+        contexts.add(SignatureContext.builder().build());
+        var executor = Executors.newFixedThreadPool(4);
+        var threadNames = ConcurrentHashMap.<String>newKeySet();
+
+        try {
+            var batchVerifier = BatchVerifier.builder()
+                    .verificationSpec(getVerificationSpec())
+                    .executor(task -> executor.execute(() -> {
+                        threadNames.add(Thread.currentThread().getName());
+                        task.run();
+                    }))
+                    .build();
+
+            // execute
+            var results = batchVerifier.verify(contexts);
+
+            // verify
+            assertThat(results.subList(0, contexts.size() - 1)).allMatch(VerificationResult::isVerified);
+            assertThat(results.get(contexts.size() - 1).isVerified()).isFalse();
+            assertThat(threadNames).isNotEmpty().noneMatch(name -> name.equals(Thread.currentThread().getName()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void getterExceptionIsReported() throws Exception {
+        // setup
+        var batchVerifier = BatchVerifier.builder()
+                .verificationSpec(ObjectMother.getVerificationSpecBuilder()
+                        .context(SignatureContext.builder().build())
+                        .publicKeyGetter(keyId -> {
+                            throw new IllegalStateException("getter failure");
+                        })
+                        .build())
+                .build();
+        var contexts = List.of(getSignedContext(ObjectMother.getEdKeyId(), "/a"));
+
+        // execute
+        var results = batchVerifier.verify(contexts);
+
+        // verify
+        assertThat(results.get(0).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
+        assertThat(results.get(0).getException()).hasRootCauseMessage("getter failure");
+    }
+
+    private BatchVerifier getBatchVerifier() {
+        return BatchVerifier.builder()
+                .verificationSpec(getVerificationSpec())
+                .build();
+    }
+
+    private VerificationSpec getVerificationSpec() {
+        return getVerificationSpecBuilder().build();
+    }
+
+    private VerificationSpec.Builder getVerificationSpecBuilder() {
+        return ObjectMother.getVerificationSpecBuilder()
+                .requiredComponents(SignatureComponents.builder().method().path().build())
+                .requiredParameters(SignatureParameterType.KEY_ID)
+                .context(SignatureContext.builder().build())
+                .publicKeyGetter(this::getPublicKey);
+    }
+
+    private PublicKeyInfo getPublicKey(String keyId) throws Exception {
+        keyFetchCounts.computeIfAbsent(keyId, key -> new AtomicInteger()).incrementAndGet();
+
+        if (ObjectMother.getEdKeyId().equals(keyId)) {
+            return PublicKeyInfo.builder().algorithm(SignatureAlgorithm.ED_25519).publicKey(ObjectMother.getEdPublicKey()).build();
+        } else if (ObjectMother.getHmacKeyId().equals(keyId)) {
+            return PublicKeyInfo.builder().algorithm(SignatureAlgorithm.HMAC_SHA_256).publicKey(ObjectMother.getHmacKey()).build();
+        } else {
+            throw new IllegalArgumentException("Unknown key " + keyId);
+        }
+    }
+
+    private static SignatureContext getSignedContext(String keyId, String path) throws SignatureException {
+        var isHmac = ObjectMother.getHmacKeyId().equals(keyId);
+        var algorithm = isHmac ? SignatureAlgorithm.HMAC_SHA_256 : SignatureAlgorithm.ED_25519;
+        var contextBuilder = SignatureContext.builder()
+                .method("POST")
+                .targetUri(URI.create("https://example.com" + path));
+        var signatureResult = SignatureSpec.builder()
+                .signatureLabel(ObjectMother.SIGNATURE_LABEL)
+                .privateKey(isHmac ? ObjectMother.getHmacKey() : ObjectMother.getEdPrivateKey())
+                .parameters(SignatureParameters.builder().algorithm(algorithm).keyId(keyId).build())
+                .components(SignatureComponents.builder().method().path().build())
+                .context(contextBuilder.build())
+                .build()
+                .sign();
+
+        return contextBuilder
+                .header(SignatureHeaders.SIGNATURE_INPUT, signatureResult.getSignatureInput())
+                .header(SignatureHeaders.SIGNATURE, signatureResult.getSignature())
+                .build();
+    }
+}
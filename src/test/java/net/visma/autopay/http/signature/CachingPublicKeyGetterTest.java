@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+
+class CachingPublicKeyGetterTest {
+    private final AtomicLong time = new AtomicLong();
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    @Test
+    void keysAreCachedAndDecoded() throws Exception {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .ticker(time::get)
+                .build();
+
+        // execute
+        var first = cachingGetter.apply("key");
+        var second = cachingGetter.apply("key");
+
+        // verify
+        assertThat(second).isSameAs(first);
+        assertThat(loadCount).hasValue(1);
+        assertThat(first.getAlgorithm()).isEqualTo(SignatureAlgorithm.ED_25519);
+        assertThat(first.getPublicKey(null)).isInstanceOf(PublicKey.class);
+    }
+
+    @Test
+    void expiredKeysAreReloaded() throws Exception {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .timeToLive(60)
+                .ticker(time::get)
+                .build();
+        var first = cachingGetter.apply("key");
+
+        // execute
+        time.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        var beforeExpiration = cachingGetter.apply("key");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        var afterExpiration = cachingGetter.apply("key");
+
+        // verify
+        assertThat(beforeExpiration).isSameAs(first);
+        assertThat(afterExpiration).isNotSameAs(first);
+        assertThat(loadCount).hasValue(2);
+    }
+
+    @Test
+    void keysAreRefreshedInBackground() throws Exception {
+        // setup
+        var refreshTasks = new ArrayList<Runnable>();
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .timeToLive(60)
+                .refreshAfter(30)
+                .executor(refreshTasks::add)
+                .ticker(time::get)
+                .build();
+        var first = cachingGetter.apply("key");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        // execute
+        var stale = cachingGetter.apply("key");
+        var staleAgain = cachingGetter.apply("key");
+        refreshTasks.forEach(Runnable::run);
+        var refreshed = cachingGetter.apply("key");
+
+        // verify
+        assertThat(stale).isSameAs(first);
+        assertThat(staleAgain).isSameAs(first);
+        assertThat(refreshTasks).hasSize(1);
+        assertThat(refreshed).isNotSameAs(first);
+        assertThat(loadCount).hasValue(2);
+    }
+
+    @Test
+    void exceptionsAreCachedWhenRequested() {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .negativeTimeToLive(10)
+                .ticker(time::get)
+                .build();
+        var notCachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .ticker(time::get)
+                .build();
+
+        // execute
+        var first = catchThrowable(() -> cachingGetter.apply("unknown"));
+        var second = catchThrowable(() -> cachingGetter.apply("unknown"));
+        var third = catchThrowable(() -> cachingGetter.apply("unknown"));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        var afterExpiration = catchThrowable(() -> cachingGetter.apply("unknown"));
+        catchThrowable(() -> notCachingGetter.apply("unknown"));
+        catchThrowable(() -> notCachingGetter.apply("unknown"));
+
+        // verify
+        assertThat(first).isInstanceOf(IllegalArgumentException.class);
+        assertThat(second).isInstanceOf(SignatureException.class).hasCause(first);
+        assertThat(((SignatureException) second).getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
+        assertThat(third).isInstanceOf(SignatureException.class).hasCause(first).isNotSameAs(second);
+        assertThat(afterExpiration).isInstanceOf(IllegalArgumentException.class).isNotSameAs(first);
+        assertThat(loadCount).hasValue(4);
+    }
+
+    @Test
+    void cachedSignatureExceptionsRetainErrorCode() {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(keyId -> {
+                    loadCount.incrementAndGet();
+                    throw new SignatureException(SignatureException.ErrorCode.GENERIC, "Key revoked");
+                })
+                .negativeTimeToLive(10)
+                .ticker(time::get)
+                .build();
+
+        // execute
+        var first = catchThrowable(() -> cachingGetter.apply("revoked"));
+        var second = catchThrowable(() -> cachingGetter.apply("revoked"));
+
+        // verify
+        assertThat(second).isInstanceOf(SignatureException.class).hasCause(first).hasMessage("Key revoked");
+        assertThat(((SignatureException) second).getErrorCode()).isEqualTo(SignatureException.ErrorCode.GENERIC);
+        assertThat(loadCount).hasValue(1);
+    }
+
+    @Test
+    void errorsAreNotCached() throws Exception {
+        // setup
+        var failing = new AtomicBoolean(true);
+        var cachingGetter = CachingPublicKeyGetter.builder(keyId -> {
+                    if (failing.getAndSet(false)) {
+                        throw new AssertionError("Failed");
+                    }
+                    return loadKey(keyId);
+                })
+                .negativeTimeToLive(10)
+                .build();
+
+        // execute
+        var first = catchThrowable(() -> cachingGetter.apply("key"));
+        var second = cachingGetter.apply("key");
+
+        // verify
+        assertThat(first).isInstanceOf(AssertionError.class);
+        assertThat(second).isNotNull();
+        assertThat(loadCount).hasValue(1);
+    }
+
+    @Test
+    void concurrentRequestsLoadKeyOnce() throws Exception {
+        // setup
+        var loadStarted = new CountDownLatch(1);
+        var loadAllowed = new CountDownLatch(1);
+        var cachingGetter = CachingPublicKeyGetter.builder(keyId -> {
+                    loadStarted.countDown();
+                    loadAllowed.await();
+                    return loadKey(keyId);
+                })
+                .build();
+        var futures = new ArrayList<CompletableFuture<PublicKeyInfo>>();
+
+        // execute
+        futures.add(CompletableFuture.supplyAsync(() -> applyUnchecked(cachingGetter, "key")));
+        loadStarted.await();
+        for (var i = 0; i < 4; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> applyUnchecked(cachingGetter, "key")));
+        }
+        loadAllowed.countDown();
+        var results = new ArrayList<PublicKeyInfo>();
+        for (var future : futures) {
+            results.add(future.get());
+        }
+
+        // verify
+        assertThat(loadCount).hasValue(1);
+        assertThat(results).allMatch(result -> result == results.get(0));
+    }
+
+    @Test
+    void sizeIsLimited() throws Exception {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .maximumSize(2)
+                .ticker(time::get)
+                .build();
+
+        // execute
+        for (var keyId : List.of("key1", "key2", "key3")) {
+            time.incrementAndGet();
+            cachingGetter.apply(keyId);
+        }
+        cachingGetter.apply("key3");
+        cachingGetter.apply("key1");
+
+        // verify
+        assertThat(cachingGetter.size()).isEqualTo(2);
+        assertThat(loadCount).hasValue(4);
+    }
+
+    @Test
+    void oldestEntriesAreEvictedInBatch() throws Exception {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey)
+                .maximumSize(20)
+                .ticker(time::get)
+                .build();
+
+        for (var i = 0; i < 20; i++) {
+            time.incrementAndGet();
+            cachingGetter.apply("key" + i);
+        }
+
+        // execute
+        time.incrementAndGet();
+        cachingGetter.apply("key20");
+        var sizeAfterEviction = cachingGetter.size();
+        cachingGetter.apply("key3");
+        cachingGetter.apply("key2");
+
+        // verify
+        assertThat(sizeAfterEviction).isEqualTo(18);
+        assertThat(loadCount).hasValue(22);
+    }
+
+    @Test
+    void interruptedWaitRestoresInterruptFlag() throws Exception {
+        // setup
+        var loadStarted = new CountDownLatch(1);
+        var loadAllowed = new CountDownLatch(1);
+        var cachingGetter = CachingPublicKeyGetter.builder(keyId -> {
+                    loadStarted.countDown();
+                    loadAllowed.await();
+                    return loadKey(keyId);
+                })
+                .build();
+        var loading = CompletableFuture.supplyAsync(() -> applyUnchecked(cachingGetter, "key"));
+        loadStarted.await();
+
+        // execute
+        Thread.currentThread().interrupt();
+        var thrown = catchThrowable(() -> cachingGetter.apply("key"));
+        var interrupted = Thread.interrupted();
+        loadAllowed.countDown();
+
+        // verify
+        assertThat(thrown).isInstanceOf(InterruptedException.class);
+        assertThat(interrupted).isTrue();
+        assertThat(loading.get()).isNotNull();
+    }
+
+    @Test
+    void invalidatedKeysAreReloaded() throws Exception {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey).build();
+        cachingGetter.apply("key1");
+        cachingGetter.apply("key2");
+
+        // execute
+        cachingGetter.invalidate("key1");
+        cachingGetter.apply("key1");
+        cachingGetter.apply("key2");
+        cachingGetter.invalidateAll();
+        cachingGetter.apply("key2");
+
+        // verify
+        assertThat(loadCount).hasValue(4);
+    }
+
+    @Test
+    void nullKeyIdIsNotCached() throws Exception {
+        // setup
+        var cachingGetter = CachingPublicKeyGetter.builder(this::loadKey).build();
+
+        // execute
+        cachingGetter.apply(null);
+        cachingGetter.apply(null);
+
+        // verify
+        assertThat(cachingGetter.size()).isZero();
+        assertThat(loadCount).hasValue(2);
+    }
+
+    private PublicKeyInfo loadKey(String keyId) {
+        loadCount.incrementAndGet();
+
+        if ("unknown".equals(keyId)) {
+            throw new IllegalArgumentException("Unknown key");
+        }
+
+        return PublicKeyInfo.builder()
+                .algorithm(SignatureAlgorithm.ED_25519)
+                .publicKey(ObjectMother.getEdPublicKey())
+                .build();
+    }
+
+    private static PublicKeyInfo applyUnchecked(CachingPublicKeyGetter cachingGetter, String keyId) {
+        try {
+            return cachingGetter.apply(keyId);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -23,6 +23,8 @@ package net.visma.autopay.http.signature;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
@@ -53,4 +55,27 @@ class DataSignerTest {
         // verify
         assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
     }
+
+    @Test
+    void hmacKeyCanBeReused() throws Exception {
+        // setup
+        var privateKey = SignatureKeyFactory.decodePrivateKey(getHmacKeyBytes(), SignatureKeyAlgorithm.HMAC);
+
+        // execute
+        var firstSignature = DataSigner.sign("text", privateKey, SignatureAlgorithm.HMAC_SHA_256);
+        var secondSignature = DataSigner.sign("text", privateKey, SignatureAlgorithm.HMAC_SHA_256);
+
+        // verify
+        var firstValid = DataVerifier.verify("text", firstSignature, SignatureKeyFactory.decodePublicKey(getHmacKeyBytes(), SignatureKeyAlgorithm.HMAC),
+                SignatureAlgorithm.HMAC_SHA_256);
+        var secondValid = DataVerifier.verify("text", secondSignature, SignatureKeyFactory.decodePublicKey(getHmacKeyBytes(), SignatureKeyAlgorithm.HMAC),
+                SignatureAlgorithm.HMAC_SHA_256);
+        assertThat(firstValid).isTrue();
+        assertThat(secondValid).isTrue();
+        assertThat(privateKey.getEncoded()).isEqualTo(getHmacKeyBytes());
+    }
+
+    private static byte[] getHmacKeyBytes() {
+        return "secret-key-used-in-multiple-signatures".getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -48,4 +48,21 @@ class PublicKeyInfoTest {
                 .hasSameHashCodeAs(key2)
                 .hasToString(key2.toString());
     }
+
+    @Test
+    void decodedKeyIsReused() throws Exception {
+        // setup
+        var publicKeyInfo = PublicKeyInfo.builder()
+                .publicKey(ObjectMother.getEdPublicKey())
+                .build();
+        var edKey = publicKeyInfo.getPublicKey(SignatureKeyAlgorithm.ED_25519);
+
+        // execute
+        var sameAlgorithmKey = publicKeyInfo.getPublicKey(SignatureKeyAlgorithm.ED_25519);
+        var otherAlgorithmKey = publicKeyInfo.getPublicKey(SignatureKeyAlgorithm.HMAC);
+
+        // verify
+        assertThat(sameAlgorithmKey).isSameAs(edKey);
+        assertThat(otherAlgorithmKey).isNotSameAs(edKey);
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class SignatureBaseTest {
+    @Test
+    void textIsEncodedAsUtf8() {
+        // setup
+        var text = "\"x-name\": Zażółć gęślą jaźń 😀";
+
+        // execute
+        var signatureBase = new SignatureBase().append("\"@method\": POST").append('\n').append(text);
+
+        // verify
+        var expectedBytes = ("\"@method\": POST\n" + text).getBytes(StandardCharsets.UTF_8);
+        assertThat(Arrays.copyOf(signatureBase.getBuffer(), signatureBase.getLength())).isEqualTo(expectedBytes);
+        assertThat(signatureBase).hasToString("\"@method\": POST\n" + text);
+    }
+
+    @Test
+    void bufferGrowsForLongBase() {
+        // setup
+        var longValue = "a".repeat(1000) + "ą".repeat(1000);
+
+        // execute
+        var signatureBase = new SignatureBase().append(longValue).append('\n').append(longValue);
+
+        // verify
+        assertThat(signatureBase.getLength()).isEqualTo(6001);
+        assertThat(signatureBase).hasToString(longValue + '\n' + longValue);
+    }
+
+    @Test
+    void signingBytesGivesSameResultAsSigningText() throws Exception {
+        // setup
+        var text = "\"@authority\": example.com\n\"x-name\": żółw";
+        var signatureBase = new SignatureBase().append(text);
+        var privateKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getHmacKey(), SignatureKeyAlgorithm.HMAC);
+        var publicKey = SignatureKeyFactory.decodePublicKey(ObjectMother.getHmacKey(), SignatureKeyAlgorithm.HMAC);
+
+        // execute
+        var textSignature = DataSigner.sign(text, privateKey, SignatureAlgorithm.HMAC_SHA_256);
+        var bytesSignature = DataSigner.sign(signatureBase, privateKey, SignatureAlgorithm.HMAC_SHA_256);
+
+        // verify
+        assertThat(bytesSignature).isEqualTo(textSignature);
+        assertThat(DataVerifier.verify(signatureBase, textSignature, publicKey, SignatureAlgorithm.HMAC_SHA_256)).isTrue();
+    }
+}
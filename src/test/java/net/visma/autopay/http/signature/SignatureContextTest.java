@@ -23,6 +23,7 @@ package net.visma.autopay.http.signature;
 
 import org.junit.jupiter.api.Test;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -122,6 +123,55 @@ class SignatureContextTest {
         }
     }
 
+    @Test
+    void componentValuesAreMemoized() throws SignatureException {
+        // setup
+        var signatureContext = SignatureContext.builder()
+                .targetUri(URI.create("https://example.com/foo?a=1%20"))
+                .header("Example-Dict", "a=1, b=2")
+                .build();
+        var components = SignatureComponents.builder().queryParam("a").queryParam("b").dictionaryMember("Example-Dict", "b").build().getComponents();
+        var componentValues = signatureContext.getComponentValues();
+
+        // execute
+        var queryParamPresent = componentValues.isPresent(components.get(0));
+        var missingQueryParamPresent = componentValues.isPresent(components.get(1));
+        var dictionaryMemberPresent = componentValues.isPresent(components.get(2));
+
+        // verify
+        assertThat(signatureContext.getComponentValues()).isSameAs(componentValues);
+        assertThat(queryParamPresent).isTrue();
+        assertThat(missingQueryParamPresent).isFalse();
+        assertThat(dictionaryMemberPresent).isTrue();
+        assertThat(componentValues.get(components.get(0))).isEqualTo("1%20")
+                .isSameAs(componentValues.get(SignatureComponents.builder().queryParam("a").build().getComponents().get(0)));
+        assertThat(componentValues.get(components.get(2))).isEqualTo("2");
+    }
+
+    @Test
+    void builtContextIsNotAffectedByBuilder() throws SignatureException {
+        // setup
+        var builder = SignatureContext.builder()
+                .header("Example-Dict", "a=1")
+                .header("Example-Dict", "b=2")
+                .trailer("Example-Trailer", "value");
+        var signatureContext = builder.build();
+        var component = SignatureComponents.builder().header("Example-Dict").build().getComponents().get(0);
+        var memoizedValue = signatureContext.getComponentValues().get(component);
+
+        // execute
+        builder.header("Example-Dict", "c=3")
+                .header("Other-Header", "value")
+                .trailer("Example-Trailer", "other");
+
+        // verify
+        assertThat(memoizedValue).isEqualTo("a=1, b=2");
+        assertThat(signatureContext.getHeaders()).containsOnlyKeys("example-dict");
+        assertThat(signatureContext.getHeaders().get("example-dict")).containsExactly("a=1", "b=2");
+        assertThat(signatureContext.getTrailers().get("example-trailer")).containsExactly("value");
+        assertThat(component.computeValue(signatureContext)).isEqualTo(memoizedValue);
+    }
+
     private static class HttpServletResponseStub {
 
         private final Map<String, List<String>> httpHeaders = new HashMap<>();
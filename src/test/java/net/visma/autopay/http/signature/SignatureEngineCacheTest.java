@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class SignatureEngineCacheTest {
+    @AfterEach
+    void afterEach() {
+        SignatureEngineCache.setEnabled(true);
+        SignatureEngineCache.setHmacKeyCacheSize(0);
+    }
+
+    @Test
+    void enginesAreReusedWithinThread() throws Exception {
+        // setup
+        var privateKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getEc256PrivateKey(), SignatureKeyAlgorithm.EC);
+        var hmacKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getHmacKey(), SignatureKeyAlgorithm.HMAC);
+        var signature = SignatureEngineCache.getSignature(SignatureAlgorithm.ECDSA_P256_SHA_256, privateKey);
+        var mac = SignatureEngineCache.getMac(SignatureAlgorithm.HMAC_SHA_256, hmacKey);
+
+        // execute
+        var sameThreadSignature = SignatureEngineCache.getSignature(SignatureAlgorithm.ECDSA_P256_SHA_256, privateKey);
+        var sameThreadMac = SignatureEngineCache.getMac(SignatureAlgorithm.HMAC_SHA_256, hmacKey);
+        var otherThreadSignature = CompletableFuture.supplyAsync(() -> {
+            try {
+                return SignatureEngineCache.getSignature(SignatureAlgorithm.ECDSA_P256_SHA_256, privateKey);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).get();
+
+        // verify
+        assertThat(sameThreadSignature).isSameAs(signature);
+        assertThat(sameThreadMac).isSameAs(mac);
+        assertThat(otherThreadSignature).isNotSameAs(signature);
+    }
+
+    @Test
+    void cachedEnginesProduceCorrectSignatures() throws Exception {
+        // setup
+        var privateKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getRsaPssPrivateKey(), SignatureKeyAlgorithm.RSA);
+        var publicKey = SignatureKeyFactory.decodePublicKey(ObjectMother.getRsaPssPublicKey(), SignatureKeyAlgorithm.RSA);
+        var algorithm = SignatureAlgorithm.RSA_PSS_SHA_512;
+
+        // execute
+        var firstSignature = DataSigner.sign("first", privateKey, algorithm);
+        var secondSignature = DataSigner.sign("second", privateKey, algorithm);
+
+        // verify
+        assertThat(DataVerifier.verify("first", firstSignature, publicKey, algorithm)).isTrue();
+        assertThat(DataVerifier.verify("second", secondSignature, publicKey, algorithm)).isTrue();
+        assertThat(DataVerifier.verify("first", secondSignature, publicKey, algorithm)).isFalse();
+    }
+
+    @Test
+    void disabledCacheCreatesNewEngines() throws Exception {
+        // setup
+        var hmacKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getHmacKey(), SignatureKeyAlgorithm.HMAC);
+        SignatureEngineCache.setEnabled(false);
+
+        // execute
+        var firstMac = SignatureEngineCache.getMac(SignatureAlgorithm.HMAC_SHA_256, hmacKey);
+        var secondMac = SignatureEngineCache.getMac(SignatureAlgorithm.HMAC_SHA_256, hmacKey);
+
+        // verify
+        assertThat(SignatureEngineCache.isEnabled()).isFalse();
+        assertThat(secondMac).isNotSameAs(firstMac);
+    }
+
+    @Test
+    void initializedMacsAreReusedPerKey() throws Exception {
+        // setup
+        SignatureEngineCache.setHmacKeyCacheSize(1);
+        var firstKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getHmacKey(), SignatureKeyAlgorithm.HMAC);
+        var secondKey = SignatureKeyFactory.decodePrivateKey(ObjectMother.getHmacKey(), SignatureKeyAlgorithm.HMAC);
+        var algorithm = SignatureAlgorithm.HMAC_SHA_256;
+
+        // execute
+        var firstMac = SignatureEngineCache.getInitializedMac(algorithm, firstKey);
+        var firstMacAgain = SignatureEngineCache.getInitializedMac(algorithm, firstKey);
+        var secondMac = SignatureEngineCache.getInitializedMac(algorithm, secondKey);
+        var firstMacEvicted = SignatureEngineCache.getInitializedMac(algorithm, firstKey);
+
+        // verify
+        assertThat(firstMacAgain).isSameAs(firstMac);
+        assertThat(secondMac).isNotSameAs(firstMac);
+        assertThat(firstMacEvicted).isNotSameAs(firstMac);
+    }
+
+    @Test
+    void cachedInitializedMacsProduceCorrectSignatures() throws Exception {
+        // setup
+        var firstKey = SignatureKeyFactory.decodePrivateKey("first-key".getBytes(StandardCharsets.UTF_8), SignatureKeyAlgorithm.HMAC);
+        var secondKey = SignatureKeyFactory.decodePrivateKey("second-key".getBytes(StandardCharsets.UTF_8), SignatureKeyAlgorithm.HMAC);
+        var algorithm = SignatureAlgorithm.HMAC_SHA_256;
+        var expectedFirst = DataSigner.sign("text", firstKey, algorithm);
+        var expectedSecond = DataSigner.sign("text", secondKey, algorithm);
+        SignatureEngineCache.setHmacKeyCacheSize(4);
+
+        // execute
+        var firstSignature = DataSigner.sign("text", firstKey, algorithm);
+        var firstSignatureAgain = DataSigner.sign("text", firstKey, algorithm);
+        var secondSignature = DataSigner.sign("text", secondKey, algorithm);
+        SignatureEngineCache.getInitializedMac(algorithm, firstKey).update((byte) 1);
+        var firstSignatureAfterUpdate = DataSigner.sign("text", firstKey, algorithm);
+
+        // verify
+        assertThat(firstSignature).isEqualTo(expectedFirst);
+        assertThat(firstSignatureAgain).isEqualTo(expectedFirst);
+        assertThat(secondSignature).isEqualTo(expectedSecond);
+        assertThat(firstSignatureAfterUpdate).isEqualTo(expectedFirst);
+    }
+}
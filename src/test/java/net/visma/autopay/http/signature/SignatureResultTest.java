@@ -53,4 +53,18 @@ class SignatureResultTest {
                 .isNotEqualTo(signatureResult2)
                 .isNotEqualTo("abc");
     }
+
+    @Test
+    void signatureBaseIsDecodedFromBytes() {
+        // setup
+        var signatureBase = new SignatureBase().append("\"@method\": GET").append('\n').append("\"x-name\": Zażółć");
+        var expectedResult = new SignatureResult("a", "b", "\"@method\": GET\n\"x-name\": Zażółć");
+
+        // execute
+        var signatureResult = new SignatureResult("a", "b", signatureBase);
+
+        // verify
+        assertThat(signatureResult.getSignatureBase()).isEqualTo("\"@method\": GET\n\"x-name\": Zażółć");
+        assertThat(signatureResult).isEqualTo(expectedResult).hasSameHashCodeAs(expectedResult);
+    }
 }
@@ -29,10 +29,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.net.URI;
 import java.security.KeyFactory;
 import java.security.Security;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.Base64;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -72,6 +74,23 @@ class SignatureSignerTest {
         assertThatCode(verificationSpec::verify).doesNotThrowAnyException();
     }
 
+    @Test
+    void signatureBaseIsNotRetainedWhenRequested() throws Exception {
+        // setup
+        var signatureSpec = ObjectMother.getSignatureSpecBuilder()
+                .retainSignatureBase(false)
+                .build();
+        var expectedSignature = "test=:ZdapoyEz/RbaQf9SBIh7Qk5sqzDfWyxKMMRkg6nDZazOD1kLIl44m0ds/Sgd1fiEVdJkS/0r8QAzGDckYh5KBg==:";
+
+        // execute
+        var result = signatureSpec.sign();
+
+        // verify
+        assertThat(result.getSignatureInput()).isEqualTo("test=()");
+        assertThat(result.getSignature()).isEqualTo(expectedSignature);
+        assertThat(result.getSignatureBase()).isNull();
+    }
+
     @Test
     void randomNonceIsCreated() throws Exception {
         // setup
@@ -119,6 +138,100 @@ class SignatureSignerTest {
         assertThatCode(verificationSpec::verify).doesNotThrowAnyException();
     }
 
+    @Test
+    void multipleSignaturesAreMerged() throws Exception {
+        // setup
+        var signatureContext = SignatureContext.builder()
+                .method("POST")
+                .targetUri(URI.create("https://example.com/foo?a=1"))
+                .header("Content-Type", "application/json")
+                .build();
+        var components = SignatureComponents.builder().method().path().queryParam("a").header("Content-Type").build();
+        var edSpec = ObjectMother.getSignatureSpecBuilder()
+                .components(components)
+                .context(signatureContext)
+                .build();
+        var hmacSpec = SignatureSpec.builder()
+                .signatureLabel("proxy")
+                .privateKey(ObjectMother.getHmacKey())
+                .parameters(SignatureParameters.builder().algorithm(SignatureAlgorithm.HMAC_SHA_256).build())
+                .components(components)
+                .context(signatureContext)
+                .build();
+        var edResult = edSpec.sign();
+        var hmacResult = hmacSpec.sign();
+
+        // execute
+        var result = SignatureSpec.signAll(List.of(edSpec, hmacSpec));
+
+        // verify
+        assertThat(result.getSignatureInput()).isEqualTo(edResult.getSignatureInput() + ", " + hmacResult.getSignatureInput());
+        assertThat(result.getResults()).containsOnlyKeys("test", "proxy");
+        assertThat(result.getResults().get("test")).isEqualTo(edResult);
+        assertThat(result.getResults().get("proxy")).isEqualTo(hmacResult);
+        assertThat(result.getSignature()).isEqualTo(edResult.getSignature() + ", " + hmacResult.getSignature());
+
+        // signature verification
+        var verificationSpec = ObjectMother.getVerificationSpecBuilder()
+                .context(SignatureContext.builder()
+                        .method("POST")
+                        .targetUri(URI.create("https://example.com/foo?a=1"))
+                        .header("Content-Type", "application/json")
+                        .header(SignatureHeaders.SIGNATURE_INPUT, result.getSignatureInput())
+                        .header(SignatureHeaders.SIGNATURE, result.getSignature())
+                        .build())
+                .build();
+        assertThat(verificationSpec.verifyAll(List.of("test"))).allMatch(VerificationResult::isVerified);
+    }
+
+    @Test
+    void duplicateLabelsAreRejected() {
+        // setup
+        var signatureSpec = ObjectMother.getSignatureSpecBuilder().build();
+
+        // execute
+        var exception = catchThrowable(() -> SignatureSpec.signAll(List.of(signatureSpec, signatureSpec)));
+
+        // verify
+        assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("test");
+    }
+
+    @Test
+    void differentContextsAreRejected() {
+        // setup
+        var firstSpec = ObjectMother.getSignatureSpecBuilder()
+                .context(SignatureContext.builder().method("GET").build())
+                .build();
+        var secondSpec = ObjectMother.getSignatureSpecBuilder()
+                .signatureLabel("proxy")
+                .context(SignatureContext.builder().method("POST").build())
+                .build();
+
+        // execute
+        var exception = catchThrowable(() -> SignatureSpec.signAll(List.of(firstSpec, secondSpec)));
+
+        // verify
+        assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("proxy");
+    }
+
+    @Test
+    void contextsWithDifferentTrailersAreRejected() {
+        // setup
+        var firstSpec = ObjectMother.getSignatureSpecBuilder()
+                .context(SignatureContext.builder().method("GET").trailer("Example-Trailer", "one").build())
+                .build();
+        var secondSpec = ObjectMother.getSignatureSpecBuilder()
+                .signatureLabel("proxy")
+                .context(SignatureContext.builder().method("GET").trailer("Example-Trailer", "two").build())
+                .build();
+
+        // execute
+        var exception = catchThrowable(() -> SignatureSpec.signAll(List.of(firstSpec, secondSpec)));
+
+        // verify
+        assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("proxy");
+    }
+
     @Nested
     class MissingItemTest {
         @Test
@@ -278,6 +391,26 @@ class SignatureSignerTest {
             assertThat(exception).hasMessageContaining("my-header");
         }
 
+        @Test
+        void registeredTypeMismatchIsDetected() {
+            // setup
+            var signatureSpec = ObjectMother.getSignatureSpecBuilder()
+                    .components(SignatureComponents.builder()
+                            .structuredHeader("Origin-Agent-Cluster")
+                            .build())
+                    .context(SignatureContext.builder()
+                            .header("Origin-Agent-Cluster", "?1, ?0")
+                            .build())
+                    .build();
+
+            // execute
+            var exception = catchThrowableOfType(signatureSpec::sign, SignatureException.class);
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_STRUCTURED_HEADER);
+            assertThat(exception).hasMessageContaining("origin-agent-cluster");
+        }
+
         @Test
         void malformedDictionaryHeaderIsDetected() {
             // setup
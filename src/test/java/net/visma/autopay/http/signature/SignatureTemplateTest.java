@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+
+class SignatureTemplateTest {
+    @BeforeAll
+    static void beforeAll() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @AfterAll
+    static void afterAll() {
+        Security.removeProvider(BouncyCastleProvider.PROVIDER_NAME);
+    }
+
+    @Test
+    void resultIsSameAsFromSignatureSpec() throws Exception {
+        // setup
+        var parameters = SignatureParameters.builder()
+                .created(Instant.parse("2022-05-02T10:45:00Z"))
+                .keyId("test-key-ed25519")
+                .visibleAlgorithm(SignatureAlgorithm.ED_25519)
+                .tag("app")
+                .build();
+        var components = SignatureComponents.builder()
+                .method()
+                .path()
+                .header("h1")
+                .structuredHeader("ch")
+                .dictionaryMember("dh", "ok")
+                .relatedRequestHeader("rh1")
+                .build();
+        var usedIfPresentComponents = SignatureComponents.builder()
+                .header("h2")
+                .header("missing")
+                .build();
+        var context = getSignatureContext();
+        var template = SignatureTemplate.builder()
+                .signatureLabel("my-sig")
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .parameters(parameters)
+                .components(components)
+                .usedIfPresentComponents(usedIfPresentComponents)
+                .build();
+        var expectedResult = SignatureSpec.builder()
+                .signatureLabel("my-sig")
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .parameters(parameters)
+                .components(components)
+                .usedIfPresentComponents(usedIfPresentComponents)
+                .context(context)
+                .build()
+                .sign();
+
+        // execute
+        var firstResult = template.sign(context);
+        var secondResult = template.sign(context);
+
+        // verify
+        assertThat(firstResult).isEqualTo(expectedResult);
+        assertThat(secondResult).isEqualTo(expectedResult);
+    }
+
+    @Test
+    void signatureBaseIsNotRetainedWhenRequested() throws Exception {
+        // setup
+        var template = SignatureTemplate.builder()
+                .signatureLabel("my-sig")
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .parameters(SignatureParameters.builder().algorithm(SignatureAlgorithm.ED_25519).build())
+                .components(SignatureComponents.builder().method().build())
+                .retainSignatureBase(false)
+                .build();
+
+        // execute
+        var result = template.sign(getSignatureContext());
+
+        // verify
+        assertThat(result.getSignature()).startsWith("my-sig=:");
+        assertThat(result.getSignatureBase()).isNull();
+    }
+
+    @Test
+    void dynamicParametersAreComputedForEachSignature() throws Exception {
+        // setup
+        var template = SignatureTemplate.builder()
+                .signatureLabel(ObjectMother.SIGNATURE_LABEL)
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .createdNow()
+                .expiresAfter(30)
+                .randomNonce()
+                .parameters(SignatureParameters.builder()
+                        .keyId("test-key-ed25519")
+                        .algorithm(SignatureAlgorithm.ED_25519)
+                        .build())
+                .components(SignatureComponents.builder().method().build())
+                .build();
+        var context = getSignatureContext();
+
+        // execute
+        var firstResult = template.sign(context);
+        var secondResult = template.sign(context);
+
+        // verify
+        assertThat(firstResult.getSignatureInput())
+                .matches(ObjectMother.SIGNATURE_LABEL + "=\\(\"@method\"\\);created=(\\d+);expires=\\d+;nonce=\"[0-9a-f]{32}\";keyid=\"test-key-ed25519\"");
+        assertThat(firstResult.getSignatureInput()).isNotEqualTo(secondResult.getSignatureInput());
+
+        var created = Instant.now().getEpochSecond();
+        var signatureParams = firstResult.getSignatureInput().split(";");
+        var signedCreated = Long.parseLong(signatureParams[1].substring("created=".length()));
+        var signedExpires = Long.parseLong(signatureParams[2].substring("expires=".length()));
+        assertThat(signedCreated).isBetween(created - 5, created);
+        assertThat(signedExpires).isEqualTo(signedCreated + 30);
+
+        ObjectMother.getVerificationSpecBuilder()
+                .context(SignatureContext.builder()
+                        .method("POST")
+                        .header(SignatureHeaders.SIGNATURE_INPUT, firstResult.getSignatureInput())
+                        .header(SignatureHeaders.SIGNATURE, firstResult.getSignature())
+                        .build())
+                .requiredParameters(SignatureParameterType.CREATED, SignatureParameterType.EXPIRES, SignatureParameterType.NONCE)
+                .build()
+                .verify();
+    }
+
+    @Test
+    void parametersAreOrderedAsBySignatureSpec() throws Exception {
+        // setup
+        var staticParameters = SignatureParameters.builder()
+                .keyId("test-key-ed25519")
+                .algorithm(SignatureAlgorithm.ED_25519)
+                .build();
+        var components = SignatureComponents.builder().method().build();
+        var context = getSignatureContext();
+        var staticFirstTemplate = SignatureTemplate.builder()
+                .signatureLabel("my-sig")
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .components(components)
+                .parameters(staticParameters)
+                .createdNow()
+                .expiresAfter(30)
+                .randomNonce()
+                .build();
+        var dynamicFirstTemplate = SignatureTemplate.builder()
+                .signatureLabel("my-sig")
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .components(components)
+                .createdNow()
+                .parameters(staticParameters)
+                .randomNonce()
+                .build();
+
+        // execute
+        var staticFirstResult = staticFirstTemplate.sign(context);
+        var dynamicFirstResult = dynamicFirstTemplate.sign(context);
+
+        // verify
+        var staticFirstCreated = Long.parseLong(getParameter(staticFirstResult, "created"));
+        var staticFirstParameters = SignatureParameters.builder()
+                .keyId("test-key-ed25519")
+                .algorithm(SignatureAlgorithm.ED_25519)
+                .created(staticFirstCreated)
+                .expires(staticFirstCreated + 30)
+                .nonce(getParameter(staticFirstResult, "nonce"))
+                .build();
+        var dynamicFirstParameters = SignatureParameters.builder()
+                .created(Long.parseLong(getParameter(dynamicFirstResult, "created")))
+                .keyId("test-key-ed25519")
+                .algorithm(SignatureAlgorithm.ED_25519)
+                .nonce(getParameter(dynamicFirstResult, "nonce"))
+                .build();
+        assertThat(staticFirstResult).isEqualTo(signWithSpec(staticFirstParameters, components, context));
+        assertThat(dynamicFirstResult).isEqualTo(signWithSpec(dynamicFirstParameters, components, context));
+        assertThat(staticFirstResult.getSignatureInput()).contains(";keyid=\"test-key-ed25519\";created=");
+        assertThat(dynamicFirstResult.getSignatureInput()).contains(";keyid=\"test-key-ed25519\";nonce=");
+    }
+
+    @Test
+    void dynamicParameterCannotBeStatic() {
+        // setup
+        var builder = SignatureTemplate.builder()
+                .signatureLabel(ObjectMother.SIGNATURE_LABEL)
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .parameters(SignatureParameters.builder()
+                        .createdNow()
+                        .algorithm(SignatureAlgorithm.ED_25519)
+                        .build())
+                .createdNow();
+
+        // execute
+        var exception = catchThrowableOfType(builder::build, IllegalArgumentException.class);
+
+        // verify
+        assertThat(exception).hasMessageContaining("created");
+    }
+
+    private static SignatureResult signWithSpec(SignatureParameters parameters, SignatureComponents components, SignatureContext context)
+            throws SignatureException {
+        return SignatureSpec.builder()
+                .signatureLabel("my-sig")
+                .privateKey(ObjectMother.getEdPrivateKey())
+                .parameters(parameters)
+                .components(components)
+                .context(context)
+                .build()
+                .sign();
+    }
+
+    private static String getParameter(SignatureResult result, String name) {
+        var matcher = Pattern.compile(";" + name + "=\"?([^;\"]+)").matcher(result.getSignatureInput());
+        assertThat(matcher.find()).isTrue();
+        return matcher.group(1);
+    }
+
+    private static SignatureContext getSignatureContext() {
+        return SignatureContext.builder()
+                .method("POST")
+                .targetUri("https://visma.com/path?query=1")
+                .header("h1", "one")
+                .header("h2", "two")
+                .header("ch", "ok;  false")
+                .header("dh", "ok=1, nok=2")
+                .relatedRequest(SignatureContext.builder()
+                        .header("rh1", "related")
+                        .build())
+                .build();
+    }
+}
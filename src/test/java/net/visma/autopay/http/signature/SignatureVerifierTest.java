@@ -21,6 +21,7 @@
  */
 package net.visma.autopay.http.signature;
 
+import net.visma.autopay.http.structured.ParserLimits;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -34,11 +35,23 @@ import java.net.URI;
 import java.security.KeyFactory;
 import java.security.Security;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 
@@ -65,6 +78,7 @@ class SignatureVerifierTest {
                         .method("POST")
                         .targetUri(URI.create("/foo"))
                         .build())
+                .signatureBaseInException(true)
                 .build();
 
         // execute
@@ -79,6 +93,30 @@ class SignatureVerifierTest {
                         "\"@signature-params\": (\"@method\" \"@path\")");
     }
 
+    @Test
+    void signatureBaseIsNotIncludedInExceptionByDefault() {
+        // setup
+        var signatureInput = "test=(\"@method\" \"@path\")";
+        var signature = "test=:4CpbBoaIi/KZGQrzdQ1ybHNG9DrQzwxxK2XBXRKPUj5mKebWb9uV+Rl2D4bJStym24PomE5+08f1KoBfHxLzBg==:";
+        var verificationSpec = ObjectMother.getVerificationSpecBuilder()
+                .context(SignatureContext.builder()
+                        .header(SignatureHeaders.SIGNATURE_INPUT, signatureInput)
+                        .header(SignatureHeaders.SIGNATURE, signature)
+                        .method("POST")
+                        .targetUri(URI.create("/foo"))
+                        .build())
+                .build();
+
+        // execute
+        var exception = catchThrowableOfType(verificationSpec::verify, SignatureException.class);
+
+        // verify
+        assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INCORRECT_SIGNATURE);
+        assertThat(exception).hasMessageContaining("different")
+                .hasMessageContaining("ed25519")
+                .hasMessageNotContaining("@method");
+    }
+
     @Test
     void existingForbiddenParameterIsDetected() {
         // setup
@@ -94,6 +132,22 @@ class SignatureVerifierTest {
         assertThat(exception).hasMessageContaining("alg");
     }
 
+    @ParameterizedTest
+    @CsvSource(value = {
+            "test=();created=1234567890, bad=&&&|test=:YQ==:",
+            "test=();created=1234567890|test=:YQ==:, bad=(1"
+    }, delimiter = '|')
+    void malformedOtherMembersAreDetected(String signatureInput, String signature) {
+        // setup
+        var verificationSpec = ObjectMother.getVerificationSpecBuilder(signatureInput, signature).build();
+
+        // execute
+        var exception = catchThrowableOfType(verificationSpec::verify, SignatureException.class);
+
+        // verify
+        assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_STRUCTURED_HEADER);
+    }
+
     @Nested
     class MissingItemTest {
         @Test
@@ -673,4 +727,455 @@ class SignatureVerifierTest {
                     .build();
         }
     }
+
+    @Nested
+    class PolicyLimitTest {
+        private static final String SIGNATURE = "test=:ZdapoyEz/RbaQf9SBIh7Qk5sqzDfWyxKMMRkg6nDZazOD1kLIl44m0ds/Sgd1fiEVdJkS/0r8QAzGDckYh5KBg==:";
+
+        @Test
+        void oversizedHeaderIsRejectedBeforeParsing() {
+            // setup
+            var verificationSpec = ObjectMother.getVerificationSpecBuilder("test=()" + "!".repeat(100), SIGNATURE)
+                    .maximumHeaderLength(100)
+                    .build();
+
+            // execute
+            var exception = catchThrowableOfType(verificationSpec::verify, SignatureException.class);
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.LIMIT_EXCEEDED);
+            assertThat(exception).hasMessageContaining("Signature-Input");
+        }
+
+        @Test
+        void tooManySignaturesAreDetected() {
+            // setup
+            var verificationSpec = ObjectMother.getVerificationSpecBuilder("a=(), b=(), test=()", SIGNATURE)
+                    .maximumSignatures(2)
+                    .build();
+
+            // execute
+            var exception = catchThrowableOfType(verificationSpec::verify, SignatureException.class);
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.LIMIT_EXCEEDED);
+            assertThat(exception).hasMessageContaining("More than 2 signatures");
+        }
+
+        @Test
+        void notAllowedKeyIdIsRejectedBeforeFetchingKey() {
+            // setup
+            var getterCalled = new AtomicBoolean();
+            var verificationSpec = ObjectMother.getVerificationSpecBuilder("test=(\"x-missing\");keyid=\"unknown\"", SIGNATURE)
+                    .keyIdFilter(Set.of("known")::contains)
+                    .publicKeyGetter(keyId -> {
+                        getterCalled.set(true);
+                        return ObjectMother.getPublicKeyGetter().apply(keyId);
+                    })
+                    .build();
+
+            // execute
+            var exception = catchThrowableOfType(verificationSpec::verify, SignatureException.class);
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
+            assertThat(exception).hasMessageContaining("unknown");
+            assertThat(getterCalled).isFalse();
+        }
+
+        @Test
+        void parserLimitsAreApplied() {
+            // setup
+            var defaultSpec = ObjectMother.getVerificationSpecBuilder("test=(" + "\"a\" ".repeat(300) + ")", SIGNATURE).build();
+            var customSpec = ObjectMother.getVerificationSpecBuilder("test=();a;b", SIGNATURE)
+                    .parserLimits(ParserLimits.builder().maximumParameters(1).build())
+                    .build();
+
+            // execute
+            var defaultException = catchThrowableOfType(defaultSpec::verify, SignatureException.class);
+            var customException = catchThrowableOfType(customSpec::verify, SignatureException.class);
+
+            // verify
+            assertThat(defaultException.getErrorCode()).isEqualTo(SignatureException.ErrorCode.LIMIT_EXCEEDED);
+            assertThat(customException.getErrorCode()).isEqualTo(SignatureException.ErrorCode.LIMIT_EXCEEDED);
+            assertThat(customException).hasMessageContaining("Signature-Input");
+        }
+
+        @Test
+        void signatureWithinLimitsIsVerified() {
+            // setup
+            var verificationSpec = VerificationSpec.builder()
+                    .signatureLabel("test")
+                    .publicKeyGetter(keyId -> PublicKeyInfo.builder()
+                            .publicKey(ObjectMother.getEdPublicKey())
+                            .algorithm(SignatureAlgorithm.ED_25519)
+                            .build())
+                    .context(SignatureContext.builder()
+                            .header(SignatureHeaders.SIGNATURE_INPUT, "test=()")
+                            .header(SignatureHeaders.SIGNATURE, SIGNATURE)
+                            .build())
+                    .maximumHeaderLength(SIGNATURE.length())
+                    .maximumSignatures(1)
+                    .keyIdFilter(keyId -> keyId == null)
+                    .build();
+
+            // execute & verify
+            assertThatCode(verificationSpec::verify).doesNotThrowAnyException();
+        }
+    }
+
+    @Nested
+    class MultipleSignaturesTest {
+        private final Map<String, AtomicInteger> keyFetchCounts = new ConcurrentHashMap<>();
+
+        @Test
+        void allLabelsAreVerified() throws Exception {
+            // setup
+            var verificationSpec = getVerificationSpec(getSignedContext());
+
+            // execute
+            var results = verificationSpec.verifyAll(List.of("origin", "proxy", "missing"));
+
+            // verify
+            assertThat(results).extracting(VerificationResult::getSignatureLabel).containsExactly("origin", "proxy", "missing");
+            assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, true, false);
+            assertThat(results.get(2).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.MISSING_DICTIONARY_KEY);
+            assertThat(keyFetchCounts).containsOnlyKeys(ObjectMother.getEdKeyId(), ObjectMother.getHmacKeyId());
+            assertThat(keyFetchCounts.values()).allSatisfy(count -> assertThat(count).hasValue(1));
+        }
+
+        @Test
+        void policyIsAppliedToEachLabel() throws Exception {
+            // setup
+            var verificationSpec = getVerificationSpecBuilder(getSignedContext())
+                    .requiredComponents(SignatureComponents.builder().queryParam("a").build())
+                    .build();
+
+            // execute
+            var results = verificationSpec.verifyAll(List.of("origin", "proxy"));
+
+            // verify
+            assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, false);
+            assertThat(results.get(1).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.MISSING_REQUIRED);
+        }
+
+        @Test
+        void headerProblemsAreReportedForAllLabels() throws Exception {
+            // setup
+            var signedContext = getSignedContext();
+            var verificationSpec = getVerificationSpec(SignatureContext.builder()
+                    .method(signedContext.getMethod())
+                    .targetUri(signedContext.getTargetUri())
+                    .header(SignatureHeaders.SIGNATURE_INPUT, signedContext.getHeaders().get("signature-input").get(0))
+                    .build());
+
+            // execute
+            var results = verificationSpec.verifyAll(List.of("origin", "proxy"));
+
+            // verify
+            assertThat(results).extracting(result -> result.getException().getErrorCode())
+                    .containsExactly(SignatureException.ErrorCode.MISSING_HEADER, SignatureException.ErrorCode.MISSING_HEADER);
+            assertThat(keyFetchCounts).isEmpty();
+        }
+
+        @Test
+        void malformedLabelDoesNotAbortOtherLabels() throws Exception {
+            // setup
+            var signedContext = getSignedContext();
+            var signature = signedContext.getHeaders().get("signature").get(0);
+            var verificationSpec = getVerificationSpec(SignatureContext.builder()
+                    .method(signedContext.getMethod())
+                    .targetUri(signedContext.getTargetUri())
+                    .header(SignatureHeaders.SIGNATURE_INPUT, signedContext.getHeaders().get("signature-input").get(0))
+                    .header(SignatureHeaders.SIGNATURE, signature.substring(0, signature.indexOf(", proxy=")) + ", proxy=1")
+                    .build());
+
+            // execute
+            var results = verificationSpec.verifyAll(List.of("origin", "proxy"));
+
+            // verify
+            assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, false);
+            assertThat(results.get(1).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_STRUCTURED_HEADER);
+        }
+
+        @Test
+        void uncheckedExceptionDoesNotAbortOtherLabels() throws Exception {
+            // setup
+            var failure = new IllegalStateException("filter failed");
+            var verificationSpec = getVerificationSpecBuilder(getSignedContext())
+                    .keyIdFilter(keyId -> {
+                        if (ObjectMother.getHmacKeyId().equals(keyId)) {
+                            throw failure;
+                        }
+                        return true;
+                    })
+                    .build();
+
+            // execute
+            var results = verificationSpec.verifyAll(List.of("origin", "proxy"));
+
+            // verify
+            assertThat(results).extracting(VerificationResult::isVerified).containsExactly(true, false);
+            assertThat(results.get(1).getException().getErrorCode()).isEqualTo(SignatureException.ErrorCode.UNEXPECTED_EXCEPTION);
+            assertThat(results.get(1).getException()).hasCause(failure);
+        }
+
+        @Test
+        void executorIsUsed() throws Exception {
+            // setup
+            var verificationSpec = getVerificationSpec(getSignedContext());
+            var executor = Executors.newFixedThreadPool(2);
+            var threadNames = ConcurrentHashMap.<String>newKeySet();
+
+            try {
+                // execute
+                var results = verificationSpec.verifyAll(List.of("origin", "proxy"), task -> executor.execute(() -> {
+                    threadNames.add(Thread.currentThread().getName());
+                    task.run();
+                }));
+
+                // verify
+                assertThat(results).allMatch(VerificationResult::isVerified);
+                assertThat(threadNames).isNotEmpty().noneMatch(name -> name.equals(Thread.currentThread().getName()));
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void componentValuesAreExtractedOnce() throws Exception {
+            // setup
+            var componentValues = new ComponentValues(getSignedContext());
+            var first = SignatureComponents.builder().queryParam("a").build().getComponents().get(0);
+            var second = SignatureComponents.builder().queryParam("a").build().getComponents().get(0);
+
+            // execute
+            var firstValue = componentValues.get(first);
+            var secondValue = componentValues.get(second);
+
+            // verify
+            assertThat(firstValue).isEqualTo("1").isSameAs(secondValue);
+        }
+
+        private VerificationSpec getVerificationSpec(SignatureContext signatureContext) {
+            return getVerificationSpecBuilder(signatureContext).build();
+        }
+
+        private VerificationSpec.Builder getVerificationSpecBuilder(SignatureContext signatureContext) {
+            return ObjectMother.getVerificationSpecBuilder()
+                    .requiredComponents(SignatureComponents.builder().method().path().build())
+                    .context(signatureContext)
+                    .publicKeyGetter(this::getPublicKey);
+        }
+
+        private PublicKeyInfo getPublicKey(String keyId) {
+            keyFetchCounts.computeIfAbsent(keyId, key -> new AtomicInteger()).incrementAndGet();
+
+            if (ObjectMother.getEdKeyId().equals(keyId)) {
+                return PublicKeyInfo.builder().algorithm(SignatureAlgorithm.ED_25519).publicKey(ObjectMother.getEdPublicKey()).build();
+            } else {
+                return PublicKeyInfo.builder().algorithm(SignatureAlgorithm.HMAC_SHA_256).publicKey(ObjectMother.getHmacKey()).build();
+            }
+        }
+
+        private SignatureContext getSignedContext() throws SignatureException {
+            var contextBuilder = SignatureContext.builder()
+                    .method("POST")
+                    .targetUri(URI.create("https://example.com/foo?a=1&b=2"));
+            var originResult = SignatureSpec.builder()
+                    .signatureLabel("origin")
+                    .privateKey(ObjectMother.getEdPrivateKey())
+                    .parameters(SignatureParameters.builder().algorithm(SignatureAlgorithm.ED_25519).keyId(ObjectMother.getEdKeyId()).build())
+                    .components(SignatureComponents.builder().method().path().queryParam("a").build())
+                    .context(contextBuilder.build())
+                    .build()
+                    .sign();
+            var proxyResult = SignatureSpec.builder()
+                    .signatureLabel("proxy")
+                    .privateKey(ObjectMother.getHmacKey())
+                    .parameters(SignatureParameters.builder().algorithm(SignatureAlgorithm.HMAC_SHA_256).keyId(ObjectMother.getHmacKeyId()).build())
+                    .components(SignatureComponents.builder().method().path().build())
+                    .context(contextBuilder.build())
+                    .build()
+                    .sign();
+
+            return contextBuilder
+                    .header(SignatureHeaders.SIGNATURE_INPUT, originResult.getSignatureInput() + ", " + proxyResult.getSignatureInput())
+                    .header(SignatureHeaders.SIGNATURE, originResult.getSignature() + ", " + proxyResult.getSignature())
+                    .build();
+        }
+    }
+
+    @Nested
+    class AsyncTest {
+        private static final String SIGNATURE_INPUT = "test=()";
+        private static final String SIGNATURE = "test=:ZdapoyEz/RbaQf9SBIh7Qk5sqzDfWyxKMMRkg6nDZazOD1kLIl44m0ds/Sgd1fiEVdJkS/0r8QAzGDckYh5KBg==:";
+
+        @Test
+        void signatureIsVerifiedWhenKeyArrives() throws Exception {
+            // setup
+            var keyFuture = new CompletableFuture<PublicKeyInfo>();
+            var verificationSpec = getVerificationSpecBuilder(SIGNATURE)
+                    .asyncPublicKeyGetter(keyId -> keyFuture)
+                    .build();
+
+            // execute
+            var resultFuture = verificationSpec.verifyAsync();
+            var doneBeforeKey = resultFuture.isDone();
+            keyFuture.complete(ObjectMother.getPublicKeyGetter().apply(null));
+
+            // verify
+            assertThat(doneBeforeKey).isFalse();
+            assertThat(resultFuture).succeedsWithin(1, TimeUnit.SECONDS);
+        }
+
+        @Test
+        void incorrectSignatureIsDetected() {
+            // setup
+            var verificationSpec = getVerificationSpecBuilder("test=:" + Base64.getEncoder().encodeToString(new byte[64]) + ":")
+                    .asyncPublicKeyGetter(keyId -> CompletableFuture.supplyAsync(() -> getPublicKeyInfo()))
+                    .build();
+
+            // execute
+            var exception = getException(verificationSpec.verifyAsync());
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INCORRECT_SIGNATURE);
+        }
+
+        @Test
+        void getterExceptionIsWrapped() {
+            // setup
+            var verificationSpec = getVerificationSpecBuilder(SIGNATURE)
+                    .asyncPublicKeyGetter(keyId -> CompletableFuture.failedFuture(new IllegalStateException("unknown key")))
+                    .build();
+
+            // execute
+            var exception = getException(verificationSpec.verifyAsync());
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
+            assertThat(exception).hasRootCauseMessage("unknown key");
+        }
+
+        @Test
+        void timeoutCancelsKeyFetching() {
+            // setup
+            var keyFuture = new CompletableFuture<PublicKeyInfo>();
+            var verificationSpec = getVerificationSpecBuilder(SIGNATURE)
+                    .asyncPublicKeyGetter(keyId -> keyFuture)
+                    .publicKeyTimeout(Duration.ofMillis(10))
+                    .build();
+
+            // execute
+            var exception = getException(verificationSpec.verifyAsync());
+
+            // verify
+            assertThat(exception.getErrorCode()).isEqualTo(SignatureException.ErrorCode.INVALID_KEY);
+            assertThat(exception).hasMessageContaining("Timeout");
+            assertThat(keyFuture).isCancelled();
+        }
+
+        @Test
+        void cancellationIsPropagated() {
+            // setup
+            var keyFuture = new CompletableFuture<PublicKeyInfo>();
+            var verificationSpec = getVerificationSpecBuilder(SIGNATURE)
+                    .asyncPublicKeyGetter(keyId -> keyFuture)
+                    .build();
+
+            // execute
+            verificationSpec.verifyAsync().cancel(true);
+
+            // verify
+            assertThat(keyFuture).isCancelled();
+        }
+
+        @Test
+        void uncheckedExceptionFailsFuture() {
+            // setup
+            var verificationSpec = getVerificationSpecBuilder(SIGNATURE)
+                    .asyncPublicKeyGetter(keyId -> CompletableFuture.supplyAsync(() -> getPublicKeyInfo()))
+                    .keyIdFilter(keyId -> {
+                        throw new IllegalStateException("filter failed");
+                    })
+                    .build();
+
+            // execute
+            var resultFuture = verificationSpec.verifyAsync();
+
+            // verify
+            assertThat(resultFuture).isCompletedExceptionally();
+            assertThat(catchThrowable(resultFuture::join)).hasRootCauseMessage("filter failed");
+        }
+
+        @Test
+        void builderCanBeReusedWithAnotherAsyncGetter() {
+            // setup
+            var builder = getVerificationSpecBuilder(SIGNATURE)
+                    .asyncPublicKeyGetter(keyId -> CompletableFuture.failedFuture(new IllegalStateException("unknown key")));
+            var failingSpec = builder.build();
+
+            // execute
+            var workingSpec = builder
+                    .asyncPublicKeyGetter(keyId -> CompletableFuture.supplyAsync(() -> getPublicKeyInfo()))
+                    .build();
+
+            // verify
+            assertThat(catchThrowable(failingSpec::verify)).isInstanceOf(SignatureException.class);
+            assertThatCode(workingSpec::verify).doesNotThrowAnyException();
+        }
+
+        @Test
+        void synchronousGetterIsUsedWhenAsyncNotProvided() {
+            // setup
+            var verificationSpec = ObjectMother.getVerificationSpecBuilder(SIGNATURE_INPUT, SIGNATURE).build();
+
+            // execute
+            var resultFuture = verificationSpec.verifyAsync();
+
+            // verify
+            assertThat(resultFuture).isCompleted();
+        }
+
+        @Test
+        void blockingVerificationUsesAsyncGetter() {
+            // setup
+            var verificationSpec = VerificationSpec.builder()
+                    .signatureLabel(ObjectMother.SIGNATURE_LABEL)
+                    .context(SignatureContext.builder()
+                            .header(SignatureHeaders.SIGNATURE_INPUT, SIGNATURE_INPUT)
+                            .header(SignatureHeaders.SIGNATURE, SIGNATURE)
+                            .build())
+                    .asyncPublicKeyGetter(keyId -> CompletableFuture.supplyAsync(() -> getPublicKeyInfo()))
+                    .publicKeyTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            // execute & verify
+            assertThatCode(verificationSpec::verify).doesNotThrowAnyException();
+        }
+
+        private VerificationSpec.Builder getVerificationSpecBuilder(String signature) {
+            return VerificationSpec.builder()
+                    .signatureLabel(ObjectMother.SIGNATURE_LABEL)
+                    .context(SignatureContext.builder()
+                            .header(SignatureHeaders.SIGNATURE_INPUT, SIGNATURE_INPUT)
+                            .header(SignatureHeaders.SIGNATURE, signature)
+                            .build());
+        }
+
+        private PublicKeyInfo getPublicKeyInfo() {
+            return PublicKeyInfo.builder()
+                    .publicKey(ObjectMother.getEdPublicKey())
+                    .algorithm(SignatureAlgorithm.ED_25519)
+                    .build();
+        }
+
+        private SignatureException getException(CompletableFuture<Void> resultFuture) {
+            var exception = catchThrowableOfType(() -> resultFuture.get(5, TimeUnit.SECONDS), ExecutionException.class);
+
+            assertThat(exception.getCause()).isInstanceOf(SignatureException.class);
+            return (SignatureException) exception.getCause();
+        }
+    }
 }
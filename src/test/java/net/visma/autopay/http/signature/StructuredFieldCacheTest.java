@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.signature;
+
+import net.visma.autopay.http.structured.StructuredException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class StructuredFieldCacheTest {
+    @BeforeEach
+    void beforeEach() {
+        StructuredFieldCache.setMaximumSize(256);
+    }
+
+    @AfterEach
+    void afterEach() {
+        StructuredFieldCache.setMaximumSize(256);
+    }
+
+    @Test
+    void repeatedValuesAreServedFromCache() throws StructuredException {
+        // setup
+        var hits = StructuredFieldCache.getHitCount();
+        var misses = StructuredFieldCache.getMissCount();
+
+        // execute
+        var first = StructuredFieldCache.reSerialize("x-list", "a,   b;q=1");
+        var second = StructuredFieldCache.reSerialize("x-list", "a,   b;q=1");
+
+        // verify
+        assertThat(first).isEqualTo("a, b;q=1");
+        assertThat(second).isSameAs(first);
+        assertThat(StructuredFieldCache.getHitCount() - hits).isEqualTo(1);
+        assertThat(StructuredFieldCache.getMissCount() - misses).isEqualTo(1);
+        assertThat(StructuredFieldCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void knownFieldTypesAreNotGuessed() throws StructuredException {
+        // execute
+        var known = StructuredFieldCache.reSerialize("priority", "i, u=1, i");
+        var unknown = StructuredFieldCache.reSerialize("x-priority", "i, i");
+
+        // verify
+        assertThat(known).isEqualTo("i, u=1");
+        assertThat(unknown).isEqualTo("i, i");
+    }
+
+    @Test
+    void valuesNotMatchingRegisteredTypeAreRejected() throws StructuredException {
+        // execute
+        var unknown = StructuredFieldCache.reSerialize("x-origin-agent-cluster", "?1, ?0");
+
+        // verify
+        assertThat(unknown).isEqualTo("?1, ?0");
+        assertThatThrownBy(() -> StructuredFieldCache.reSerialize("origin-agent-cluster", "?1, ?0")).isInstanceOf(StructuredException.class);
+        assertThatThrownBy(() -> StructuredFieldCache.reSerialize("priority", "(u i)")).isInstanceOf(StructuredException.class);
+    }
+
+    @Test
+    void singleDictionaryMemberIsNotReSerializedAsItem() throws StructuredException {
+        // execute
+        var dictionary = StructuredFieldCache.reSerialize("x-value", "a=1");
+        var dictionaryWithParameters = StructuredFieldCache.reSerialize("x-value", "a=1;b");
+        var token = StructuredFieldCache.reSerialize("x-value", "a;b=1");
+
+        // verify
+        assertThat(dictionary).isEqualTo("a=1");
+        assertThat(dictionaryWithParameters).isEqualTo("a=1;b");
+        assertThat(token).isEqualTo("a;b=1");
+    }
+
+    @Test
+    void sizeIsLimited() throws StructuredException {
+        // setup
+        StructuredFieldCache.setMaximumSize(10);
+
+        // execute
+        for (int i = 0; i < 100; i++) {
+            StructuredFieldCache.reSerialize("x-value", String.valueOf(i));
+        }
+
+        // verify
+        assertThat(StructuredFieldCache.size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void cacheCanBeDisabled() throws StructuredException {
+        // setup
+        StructuredFieldCache.setMaximumSize(0);
+
+        // execute
+        var value = StructuredFieldCache.reSerialize("x-value", "?1;a=b");
+
+        // verify
+        assertThat(value).isEqualTo("?1;a=b");
+        assertThat(StructuredFieldCache.size()).isZero();
+    }
+
+    @Test
+    void longValuesAreNotCached() throws StructuredException {
+        // setup
+        var longValue = "a".repeat(StructuredFieldCache.MAXIMUM_VALUE_LENGTH + 1);
+
+        // execute
+        var value = StructuredFieldCache.reSerialize("x-value", longValue);
+
+        // verify
+        assertThat(value).isEqualTo(longValue);
+        assertThat(StructuredFieldCache.size()).isZero();
+    }
+
+    @Test
+    void invalidValuesAreNotCached() {
+        // execute & verify
+        assertThatThrownBy(() -> StructuredFieldCache.reSerialize("priority", "u=")).isInstanceOf(StructuredException.class);
+        assertThat(StructuredFieldCache.size()).isZero();
+    }
+
+    @Test
+    void defaultParserLimitsAreApplied() {
+        // setup
+        var tooManyMembers = "a=1, ".repeat(1024) + "a=1";
+        var tooManyParameters = "a" + ";a".repeat(257);
+
+        // execute & verify
+        assertThatThrownBy(() -> StructuredFieldCache.reSerialize("priority", tooManyMembers))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredFieldCache.reSerialize("x-value", tooManyParameters))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+    }
+}
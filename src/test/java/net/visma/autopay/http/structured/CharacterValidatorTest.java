@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022-2024 Visma Autopay AS
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.visma.autopay.http.structured;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CharacterValidatorTest {
+    @Test
+    void characterClassesMatchSpecification() {
+        // setup
+        var tokenDelimiters = "\"(),;<=>?@[\\]{}";
+
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            // execute & verify
+            assertThat(CharacterValidator.isStringChar(ch)).as("string %d", ch).isEqualTo(ch >= ' ' && ch <= '~');
+            assertThat(CharacterValidator.isFirstKeyChar(ch)).as("first key %d", ch).isEqualTo((ch >= 'a' && ch <= 'z') || ch == '*');
+            assertThat(CharacterValidator.isKeyChar(ch)).as("key %d", ch)
+                    .isEqualTo((ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9') || ch == '_' || ch == '-' || ch == '.' || ch == '*');
+            assertThat(CharacterValidator.isFirstTokenChar(ch)).as("first token %d", ch)
+                    .isEqualTo((ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || ch == '*');
+            assertThat(CharacterValidator.isTokenChar(ch)).as("token %d", ch).isEqualTo(ch >= '!' && ch <= '~' && tokenDelimiters.indexOf(ch) == -1);
+        }
+    }
+
+    @Test
+    void runsOfValidCharactersAreSkipped() {
+        // setup
+        var input = "key-1.a_*=Token/x:y;q";
+
+        // execute
+        var keyEnd = CharacterValidator.skipKeyChars(input, 1, input.length());
+        var tokenEnd = CharacterValidator.skipTokenChars(input, keyEnd + 1, input.length());
+
+        // verify
+        assertThat(keyEnd).isEqualTo(input.indexOf('='));
+        assertThat(tokenEnd).isEqualTo(input.indexOf(';'));
+        assertThat(CharacterValidator.skipTokenChars(input, 0, 3)).isEqualTo(3);
+    }
+
+    @Test
+    void invalidValuesAreRejected() {
+        // execute & verify
+        assertThatThrownBy(() -> CharacterValidator.validateString("a\tb")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CharacterValidator.validateString("zażółć")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CharacterValidator.validateToken("a b")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CharacterValidator.validateToken("1a")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CharacterValidator.validateKeys(List.of("a", "aB"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CharacterValidator.validateKeys(List.of(""))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
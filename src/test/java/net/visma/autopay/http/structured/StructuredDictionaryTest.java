@@ -32,6 +32,7 @@ import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.assertj.core.api.Assertions.entry;
 
 
@@ -224,4 +225,69 @@ class StructuredDictionaryTest {
         assertThat(str2).isNotEqualTo(str3);
         assertThat(str2.hashCode()).isNotEqualTo(str3.hashCode());
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sig1", "sig2", "flag", "sig3", "str", "none"})
+    void memberIsFoundWithoutBuildingWholeDictionary(String key) throws StructuredException {
+        // setup
+        var header = "sig1=(\"@method\" \"a,b\");created=1618884473;keyid=\"test-key\", sig2=:dGVzdA==:, flag;a=1,\tsig3=(),"
+                + " str=\"x\\\"(,y\", sig1=(\"@path\")";
+        var expected = StructuredDictionary.parse(header).getItem(key);
+        var splitIndex = header.indexOf(", sig2");
+
+        // execute
+        var member = StructuredDictionary.findMember(header, key, StructuredItem.class);
+        var lineMember = StructuredDictionary.findMember(List.of(header.substring(0, splitIndex), header.substring(splitIndex + 1)), key,
+                StructuredItem.class);
+
+        // verify
+        assertThat(member).isEqualTo(expected);
+        assertThat(lineMember).isEqualTo(expected);
+    }
+
+    @Test
+    void lastMemberOccurrenceIsFound() throws StructuredException {
+        // execute
+        var member = StructuredDictionary.findMember("a=1, b=2, a=3", "a", StructuredInteger.class);
+
+        // verify
+        assertThat(member.get().intValue()).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a=1,", "a=1 b=2", "a=(1 2", "a=\"x", "A=1", "b=1, a=?2", "a=1 ,, b=2", "a=1, b=&&&", "b=(1 &), a=1", "b=:@@:, a=1",
+            "b=1;&, a=1"})
+    void malformedDictionaryIsDetectedWhenFindingMember(String header) {
+        assertThatThrownBy(() -> StructuredDictionary.findMember(header, "a", StructuredItem.class)).isInstanceOf(StructuredException.class);
+        assertThatThrownBy(() -> StructuredDictionary.parse(header)).isInstanceOf(StructuredException.class);
+    }
+
+    @Test
+    void wrongMemberClassIsDetected() {
+        // execute
+        var exception = catchThrowableOfType(() -> StructuredDictionary.findMember("a=1", "a", StructuredBytes.class), StructuredException.class);
+
+        // verify
+        assertThat(exception.getErrorCode()).isEqualTo(StructuredException.ErrorCode.WRONG_ITEM_CLASS);
+    }
+
+    @Test
+    void serializedFormIsCached() throws StructuredException {
+        // setup
+        var dictionary = StructuredDictionary.parse("a=(1 2);x=?0, b, c=\"str\";y");
+        var sb = new StringBuilder("Signature-Input: ");
+
+        // execute
+        var first = dictionary.serialize();
+        var second = dictionary.serialize();
+        dictionary.serializeTo(sb);
+
+        // verify
+        assertThat(first).isEqualTo("a=(1 2);x=?0, b, c=\"str\";y").isSameAs(second);
+        assertThat(dictionary.getItem("a").get().serialize()).isSameAs(dictionary.getItem("a").get().serialize());
+        assertThat(sb).hasToString("Signature-Input: " + first);
+        assertThatThrownBy(() -> dictionary.itemMap().remove("a")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> dictionary.<StructuredInnerList>getItem("a").get().itemList().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
 }
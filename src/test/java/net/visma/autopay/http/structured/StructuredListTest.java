@@ -23,7 +23,11 @@ package net.visma.autopay.http.structured;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -146,4 +150,26 @@ class StructuredListTest {
             return name().toLowerCase();
         }
     }
+
+    @Test
+    void serializedToWriterAndBuffer() throws Exception {
+        // setup
+        var list = StructuredList.parse(":X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:, (\"@method\" \"@path\");keyid=\"k\"");
+        var writer = new StringWriter().append("X: ");
+        var buffer = ByteBuffer.allocate(100).put((byte) '>');
+        var smallBuffer = ByteBuffer.allocate(10);
+
+        // execute
+        var returnedWriter = list.serializeTo(writer).append('\n');
+        list.serializeTo(buffer);
+
+        // verify
+        var expected = list.serialize();
+        assertThat(returnedWriter).isSameAs(writer);
+        assertThat(writer).hasToString("X: " + expected + "\n");
+        assertThat(buffer.position()).isEqualTo(expected.length() + 1);
+        assertThat(new String(buffer.array(), 1, expected.length(), StandardCharsets.US_ASCII)).isEqualTo(expected);
+        assertThatThrownBy(() -> list.serializeTo(smallBuffer)).isInstanceOf(BufferOverflowException.class);
+        assertThat(smallBuffer.position()).isZero();
+    }
 }
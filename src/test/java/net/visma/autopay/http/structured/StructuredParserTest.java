@@ -25,7 +25,10 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Random;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -123,6 +126,48 @@ class StructuredParserTest {
     }
 
 
+    @Test
+    void parseAsciiBytes() throws StructuredException {
+        // setup
+        var dictionary = " sig1=(\"@method\" \"x-na\\\\me\");created=1618884479;keyid=\"test-key\", sig2=:w4ZibGV0w6ZydGU=:;a=1.5 ";
+        var list = "sugar,  tea;q=\"a\\\"b\" , (rum -12)";
+
+        // execute
+        var parsedDictionary = StructuredDictionary.parse(dictionary.getBytes(StandardCharsets.US_ASCII));
+        var parsedList = StructuredList.parse(list.getBytes(StandardCharsets.US_ASCII));
+
+        // verify
+        assertThat(parsedDictionary).isEqualTo(StructuredDictionary.parse(dictionary));
+        assertThat(parsedList).isEqualTo(StructuredList.parse(list));
+        assertThat(parsedList.serialize()).isEqualTo("sugar, tea;q=\"a\\\"b\", (rum -12)");
+    }
+
+    @Test
+    void nonAsciiBytesAreDetected() {
+        // setup
+        var input = "a=\"zażółć\"".getBytes(StandardCharsets.UTF_8);
+
+        // execute & verify
+        assertThatThrownBy(() -> StructuredDictionary.parse(input)).isInstanceOfSatisfying(StructuredException.class,
+                e -> assertThat(e.getErrorCode()).isEqualTo(StructuredException.ErrorCode.UNEXPECTED_CHARACTER));
+    }
+
+    @Test
+    void parseMultipleLines() throws StructuredException {
+        // setup
+        var dictionaryLines = List.of("a=1, b=\"two\"", " c=(x y);p=?0", "d");
+        var listLines = List.of("1", "", "2");
+
+        // execute
+        var dictionary = StructuredDictionary.parse(dictionaryLines);
+        var exception = Assertions.catchThrowableOfType(() -> StructuredList.parse(listLines), StructuredException.class);
+
+        // verify
+        assertThat(dictionary.serialize()).isEqualTo("a=1, b=\"two\", c=(x y);p=?0, d");
+        assertThat(exception.getErrorCode()).isEqualTo(StructuredException.ErrorCode.UNEXPECTED_CHARACTER);
+        assertThat(StructuredList.parse(List.of()).isEmpty()).isTrue();
+    }
+
     @Test
     void parseBoolean() throws StructuredException {
         assertThat(StructuredBoolean.parse("?1").boolValue()).isTrue();
@@ -141,6 +186,44 @@ class StructuredParserTest {
                 .satisfies(item -> assertThat(item.doubleParam("pr")).contains(-0.8));
     }
 
+    @Test
+    void bytesAreDecodedLikeJavaDecoder() throws StructuredException {
+        // setup
+        var random = new Random(42);
+        var invalidValues = List.of("YQ=", "Y", "Y===", "====", "YQ==YQ==", "Y Q==", "YQ-_", "YQ=a", "Y\u0080Q=");
+
+        for (int length = 0; length < 70; length++) {
+            var bytes = new byte[length];
+            random.nextBytes(bytes);
+            var encoded = Base64.getEncoder().encodeToString(bytes);
+
+            // execute & verify
+            assertThat(StructuredBytes.parse(":" + encoded + ":").bytesValue()).isEqualTo(bytes);
+            assertThat(StructuredBytes.parse(":" + encoded.replace("=", "") + ":").bytesValue()).isEqualTo(bytes);
+        }
+
+        for (var invalidValue : invalidValues) {
+            assertThatThrownBy(() -> StructuredBytes.parse(":" + invalidValue + ":")).isInstanceOfSatisfying(StructuredException.class,
+                    e -> assertThat(e.getErrorCode()).isEqualTo(StructuredException.ErrorCode.INVALID_BYTES));
+        }
+    }
+
+    @Test
+    void numbersAreAccumulatedDirectly() throws StructuredException {
+        // setup
+        var integers = List.of("0", "-0", "007", "999999999999999", "-999999999999999", "1618884479");
+        var decimals = List.of("0.0", "-0.0", "1.", "-.5", "999999999999.999", "-999999999999.999", "12.340", "0.001");
+
+        // execute & verify
+        for (var integer : integers) {
+            assertThat(StructuredInteger.parse(integer).longValue()).isEqualTo(Long.parseLong(integer));
+        }
+
+        for (var decimal : decimals) {
+            assertThat(StructuredDecimal.parse(decimal).bigDecimalValue()).isEqualByComparingTo(new BigDecimal(decimal));
+        }
+    }
+
     @Test
     void parseDecimal() throws StructuredException {
         assertThat(StructuredDecimal.parse("4.5").bigDecimalValue()).isEqualTo(new BigDecimal("4.5"));
@@ -204,6 +287,11 @@ class StructuredParserTest {
                 assertThat(str.serialize()).isEqualTo("a, b, c;foo=bar"));
         assertThat(StructuredField.parse("")).isInstanceOfSatisfying(StructuredList.class, str ->
                 assertThat(str.serialize()).isEmpty());
+        assertThat(StructuredField.parse("a=1")).isInstanceOfSatisfying(StructuredDictionary.class, str ->
+                assertThat(str.serialize()).isEqualTo("a=1"));
+        assertThat(StructuredField.parse("a;x=\"b, c=2\", d,\te=(1 2)")).isInstanceOfSatisfying(StructuredDictionary.class, str ->
+                assertThat(str.serialize()).isEqualTo("a;x=\"b, c=2\", d, e=(1 2)"));
+        assertThat(StructuredField.parse("a;x=\"b, c=2\", d")).isInstanceOf(StructuredList.class);
     }
 
     @Test
@@ -323,6 +411,81 @@ class StructuredParserTest {
         assertThat(signatureInput.itemList().get(3).stringParam("key")).contains("sig1");
     }
 
+    @Test
+    void limitsAreEnforced() {
+        // setup
+        var limits = ParserLimits.builder()
+                .maximumInputLength(40)
+                .maximumMembers(2)
+                .maximumInnerListLength(2)
+                .maximumParameters(1)
+                .maximumByteSequenceLength(3)
+                .build();
+        var tooLong = "a=" + "1".repeat(39);
+
+        // execute & verify
+        assertThatThrownBy(() -> StructuredDictionary.parse(tooLong, limits)).isInstanceOf(StructuredException.class)
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredDictionary.parse("a, b, c", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredDictionary.findMember(List.of("a, b", "c"), "a", StructuredItem.class, limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredDictionary.countMembers(List.of("a, b, c"), limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredList.parse("1, 2, 3", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredList.parse(List.of("(1 2 3)"), limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredList.parse("1;a;b", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredList.parse(":AQIDBA==:", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void repeatedKeysAreCountedTowardsLimits() {
+        // setup
+        var limits = ParserLimits.builder()
+                .maximumMembers(2)
+                .maximumParameters(1)
+                .build();
+
+        // execute & verify
+        assertThatThrownBy(() -> StructuredDictionary.parse("a=1, a=1, a=1", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredDictionary.countMembers(List.of("a=1, a=1, a=1"), limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredList.parse("1;a;a", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+        assertThatThrownBy(() -> StructuredDictionary.parse("a;b;b", limits))
+                .extracting("errorCode").isEqualTo(StructuredException.ErrorCode.LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void inputWithinLimitsIsParsed() throws StructuredException {
+        // setup
+        var limits = ParserLimits.builder()
+                .maximumInputLength(40)
+                .maximumMembers(2)
+                .maximumInnerListLength(2)
+                .maximumParameters(1)
+                .maximumByteSequenceLength(3)
+                .build();
+
+        // execute
+        var dictionary = StructuredDictionary.parse("a=(1 2);x, b=:AQID:", limits);
+        var list = StructuredList.parse(List.of("1;a", "(2 3)"), limits);
+        var member = StructuredDictionary.findMember("a=1, b=2", "b", StructuredInteger.class, limits);
+        var unlimited = StructuredList.parse("1, 2, 3;a;b, :AQIDBA==:", ParserLimits.UNLIMITED);
+
+        // verify
+        assertThat(dictionary.serialize()).isEqualTo("a=(1 2);x, b=:AQID:");
+        assertThat(list.serialize()).isEqualTo("1;a, (2 3)");
+        assertThat(member).contains(StructuredInteger.of(2));
+        assertThat(unlimited.itemList()).hasSize(4);
+        assertThat(ParserLimits.builder().build()).isEqualTo(ParserLimits.DEFAULT);
+    }
+
     private void verifySerialized(List<? extends StructuredField> items, List<String> expected) {
         assertThat(items.stream().map(StructuredField::serialize).collect(Collectors.toList())).isEqualTo(expected);
     }